@@ -3,15 +3,31 @@ package com.github.rami_sabbagh.telegram.alice_framework.bots.alice;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.Command;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.CommandsHandler;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.Locality;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.Permissions;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.Privacy;
-import com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.StandardAuthorizer;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.audit.AuditLog;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.audit.AuditSink;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.audit.AuditedAuthorizer;
 import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivityHandler;
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivityMetrics;
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.MemoryInteractivityHandler;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.AdminRepository;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.AdminTree;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.AsyncCollection;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.BlockingCollection;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.BroadcastService;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.ChatStatistics;
 import com.github.rami_sabbagh.telegram.alice_framework.mongodb.ChatsTracker;
 import com.github.rami_sabbagh.telegram.alice_framework.mongodb.commands.DemoteCommand;
 import com.github.rami_sabbagh.telegram.alice_framework.mongodb.commands.PromoteCommand;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.commands.StatsCommand;
 import com.github.rami_sabbagh.telegram.alice_framework.mongodb.commands.authorizers.AuthorizeWithMongoDB;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.reactive.ReactiveCollection;
 import com.github.rami_sabbagh.telegram.alice_framework.pipes.ConsumeOncePipe;
 import com.github.rami_sabbagh.telegram.alice_framework.pipes.Pipe;
+import com.github.rami_sabbagh.telegram.alice_framework.redis.interactivity.AbstractRedisInteractivityHandler;
+import com.github.rami_sabbagh.telegram.alice_framework.redis.interactivity.AsyncRedisInteractivityHandler;
+import com.github.rami_sabbagh.telegram.alice_framework.redis.interactivity.NearCachedRedisInteractivityHandler;
 import com.github.rami_sabbagh.telegram.alice_framework.redis.interactivity.RedisInteractivityHandler;
 import com.github.rami_sabbagh.telegram.alice_framework.utilities.SilentExecutor;
 import com.mongodb.client.MongoClient;
@@ -32,10 +48,15 @@ import org.telegram.telegrambots.meta.api.objects.commands.BotCommand;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.github.rami_sabbagh.telegram.alice_framework.bots.alice.AliceOptions.Collection.ADMINS;
+import static com.github.rami_sabbagh.telegram.alice_framework.bots.alice.AliceOptions.Collection.BROADCASTS;
 import static com.github.rami_sabbagh.telegram.alice_framework.bots.alice.AliceOptions.Collection.CHATS;
+import static com.github.rami_sabbagh.telegram.alice_framework.bots.alice.AliceOptions.Collection.STATS;
 import static com.github.rami_sabbagh.telegram.alice_framework.bots.alice.AliceOptions.Command.*;
 
 public abstract class AliceBot extends TelegramLongPollingBot {
@@ -77,6 +98,42 @@ public abstract class AliceBot extends TelegramLongPollingBot {
      */
     public final MongoCollection<Document> chatsCollection;
 
+    /**
+     * The MongoDB collection of the bot's broadcasts checkpoints.
+     */
+    public final MongoCollection<Document> broadcastsCollection;
+
+    /**
+     * The MongoDB collection of the bot's chats statistics.
+     */
+    public final MongoCollection<Document> statsCollection;
+
+    /**
+     * The reactive streams MongoDB client of the bot, {@code null} unless enabled by the options.
+     */
+    public final com.mongodb.reactivestreams.client.MongoClient reactiveMongoClient;
+
+    /**
+     * The executor the reactive MongoDB operations complete on, so their callbacks don't block the driver's threads,
+     * {@code null} unless the reactive streams client is enabled.
+     */
+    public final ExecutorService mongoCallbacks;
+
+    /**
+     * The MongoDB collection of the bot's admins, as used by the framework's components.
+     */
+    public final AsyncCollection asyncAdminsCollection;
+
+    /**
+     * The MongoDB collection of the bot's chats, as used by the framework's components.
+     */
+    public final AsyncCollection asyncChatsCollection;
+
+    /**
+     * The MongoDB collection of the bot's chats statistics, as used by the framework's components.
+     */
+    public final AsyncCollection asyncStatsCollection;
+
     /**
      * The Redis namespace of the bot.
      * <p>
@@ -117,13 +174,38 @@ public abstract class AliceBot extends TelegramLongPollingBot {
     /**
      * The commands authorizer of the bot.
      */
-    public final StandardAuthorizer authorizer;
+    public final AuthorizeWithMongoDB authorizer;
+
+    /**
+     * The admins repository of the bot, which the admins changes should be made through to update the authorizer.
+     */
+    public final AdminRepository adminRepository;
+
+    /**
+     * The in-memory admins hierarchy of the bot, {@code null} unless the MongoDB warm-up is enabled by the options.
+     */
+    public final AdminTree adminTree;
+
+    /**
+     * The authorization audit log of the bot, {@code null} when disabled.
+     */
+    public final AuditLog auditLog;
 
     /**
      * The chats tracker of the bot.
      */
     public final ChatsTracker chatsTracker;
 
+    /**
+     * The pre-computed counters of the bot's chats, updated by the chats tracker.
+     */
+    public final ChatStatistics chatStatistics;
+
+    /**
+     * The broadcast service of the bot, which sends messages to all of its' chats.
+     */
+    public final BroadcastService broadcastService;
+
     /**
      * The commands handler of the bot.
      */
@@ -145,6 +227,31 @@ public abstract class AliceBot extends TelegramLongPollingBot {
         mongoDatabase = mongoClient.getDatabase(options.mongoDatabaseName());
         adminsCollection = mongoDatabase.getCollection(options.mongoCollectionName(ADMINS));
         chatsCollection = mongoDatabase.getCollection(options.mongoCollectionName(CHATS));
+        broadcastsCollection = mongoDatabase.getCollection(options.mongoCollectionName(BROADCASTS));
+        statsCollection = mongoDatabase.getCollection(options.mongoCollectionName(STATS));
+
+        if (options.reactiveMongo()) {
+            reactiveMongoClient = com.mongodb.reactivestreams.client.MongoClients.create(options.mongoConnectionURI());
+            com.mongodb.reactivestreams.client.MongoDatabase reactiveDatabase =
+                    reactiveMongoClient.getDatabase(options.mongoDatabaseName());
+            mongoCallbacks = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "alice-mongo-callbacks");
+                thread.setDaemon(true);
+                return thread;
+            });
+            asyncAdminsCollection = new ReactiveCollection(
+                    reactiveDatabase.getCollection(options.mongoCollectionName(ADMINS)), mongoCallbacks);
+            asyncChatsCollection = new ReactiveCollection(
+                    reactiveDatabase.getCollection(options.mongoCollectionName(CHATS)), mongoCallbacks);
+            asyncStatsCollection = new ReactiveCollection(
+                    reactiveDatabase.getCollection(options.mongoCollectionName(STATS)), mongoCallbacks);
+        } else {
+            reactiveMongoClient = null;
+            mongoCallbacks = null;
+            asyncAdminsCollection = new BlockingCollection(adminsCollection);
+            asyncChatsCollection = new BlockingCollection(chatsCollection);
+            asyncStatsCollection = new BlockingCollection(statsCollection);
+        }
 
         redisNamespace = options.redisNamespace();
         redisClient = RedisClient.create(options.redisConnectionURI());
@@ -155,19 +262,52 @@ public abstract class AliceBot extends TelegramLongPollingBot {
         silent = new SilentExecutor(this);
 
         updatesPipe = new ConsumeOncePipe<>();
-        authorizer = new AuthorizeWithMongoDB(silent, botCreatorID, adminsCollection);
-        chatsTracker = new ChatsTracker(botUsername, chatsCollection);
-        commandsHandler = new CommandsHandler(botUsername, silent, authorizer);
-        interactivityHandler = new RedisInteractivityHandler(redisNamespace, redisCommands);
+        authorizer = new AuthorizeWithMongoDB(silent, botCreatorID, asyncAdminsCollection);
+        adminRepository = new AdminRepository(asyncAdminsCollection);
+        adminRepository.registerAdminsListener(authorizer);
+        adminTree = options.warmUpMongo() ? new AdminTree() : null;
+        if (adminTree != null) adminRepository.registerAdminsListener(adminTree);
+        AuditSink auditSink = options.authorizationAuditSink();
+        auditLog = auditSink == null ? null : new AuditLog(auditSink);
+        chatsTracker = new ChatsTracker(botUsername, asyncChatsCollection);
+        chatStatistics = new ChatStatistics(asyncStatsCollection);
+        chatsTracker.enableStatistics(chatStatistics);
+        broadcastService = new BroadcastService(silent, chatsCollection, broadcastsCollection, chatsTracker);
+        commandsHandler = new CommandsHandler(botUsername, silent,
+                auditLog == null ? authorizer : new AuditedAuthorizer(authorizer, auditLog));
+        if (options.inMemoryInteractivity()) {
+            interactivityHandler = new MemoryInteractivityHandler(options.interactivityMaxSessions(),
+                    options.interactivityIdleTimeout(), options.interactivitySnapshotFile(),
+                    options.interactivitySnapshotInterval());
+        } else {
+            AbstractRedisInteractivityHandler redisInteractivityHandler;
+            if (options.interactivityNearCacheSize() > 0)
+                redisInteractivityHandler = new NearCachedRedisInteractivityHandler(redisNamespace, redisCommands,
+                        redisClient, options.interactivityNearCacheSize());
+            else if (options.pipelineInteractivity())
+                redisInteractivityHandler = new AsyncRedisInteractivityHandler(redisNamespace, redisClient.connect());
+            else
+                redisInteractivityHandler = new RedisInteractivityHandler(redisNamespace, redisCommands);
+            if (options.filterInactiveChats()) redisInteractivityHandler.enableActiveChatsFilter(redisClient);
+            if (options.deliverSessionExpiry()) redisInteractivityHandler.enableSessionExpiry(redisClient);
+            interactivityHandler = redisInteractivityHandler;
+        }
+
+        chatsTracker.registerMigrationListener(interactivityHandler::migrateChat);
+        InteractivityMetrics.reportActiveSessions(interactivityHandler);
+
+        prepareMongo(options.warmUpMongo());
 
         updatesPipe.registerHandler(chatsTracker);
         updatesPipe.registerHandler(commandsHandler);
         updatesPipe.registerHandler(interactivityHandler);
 
         if (options.enableDefaultCommand(PROMOTE))
-            commandsHandler.registerCommand(new PromoteCommand(adminsCollection, silent, botCreatorID));
+            commandsHandler.registerCommand(new PromoteCommand(adminRepository, silent, botCreatorID));
         if (options.enableDefaultCommand(DEMOTE))
-            commandsHandler.registerCommand(new DemoteCommand(adminsCollection, silent, botCreatorID));
+            commandsHandler.registerCommand(new DemoteCommand(adminRepository, silent, botCreatorID));
+        if (options.enableDefaultCommand(AliceOptions.Command.STATS))
+            commandsHandler.registerCommand(new StatsCommand(chatStatistics, silent));
 
         if (options.enableDefaultCommand(CANCEL))
             commandsHandler.newCommand()
@@ -194,7 +334,7 @@ public abstract class AliceBot extends TelegramLongPollingBot {
 
                         for (Command command : commands) {
                             if (command.locality == Locality.ALL) {
-                                if (command.privacy == Privacy.PUBLIC || command.privacy == Privacy.GROUP_ADMIN) {
+                                if (command.permissions == Permissions.NONE || command.permissions == Permissions.GROUP_ADMIN) {
                                     if (command.description != null) {
                                         botCommands.add(new BotCommand()
                                                 .setCommand(command.name)
@@ -213,6 +353,34 @@ public abstract class AliceBot extends TelegramLongPollingBot {
                     .build();
     }
 
+    /**
+     * Ensures the indexes of the framework's collections and the initial chats counts, and loads the known chats
+     * and the admins (with their hierarchy) into memory when requested, before any update is processed.
+     * <p>
+     * The failures are logged only, as the bot can still work without them.
+     *
+     * @param warmUp Whether to load the known chats and the admins into memory.
+     */
+    private void prepareMongo(boolean warmUp) {
+        List<CompletableFuture<?>> stages = new ArrayList<>();
+        stages.add(chatsTracker.ensureIndexes().toCompletableFuture());
+        stages.add(authorizer.ensureIndexes().toCompletableFuture());
+        stages.add(chatStatistics.ensureCounted(asyncChatsCollection).toCompletableFuture());
+        if (warmUp) {
+            stages.add(chatsTracker.warmUp().toCompletableFuture());
+            stages.add(authorizer.warmUp().toCompletableFuture());
+            stages.add(adminRepository.findAll().thenAccept(adminTree::load).toCompletableFuture());
+        }
+
+        for (CompletableFuture<?> stage : stages) {
+            try {
+                stage.join();
+            } catch (CompletionException e) {
+                logger.warn("Failed to prepare the MongoDB collections", e.getCause());
+            }
+        }
+    }
+
     private static DefaultBotOptions getDefaultBotOptions(AliceOptions options) {
         DefaultBotOptions botOptions = new DefaultBotOptions();
         botOptions.setMaxThreads(options.threadsCount());
@@ -225,14 +393,31 @@ public abstract class AliceBot extends TelegramLongPollingBot {
         logger.trace(consumed ? "Consumed {}" : "Ignored {}", update);
     }
 
+    @Override
+    public void onUpdatesReceived(List<Update> updates) {
+        //Resolve the authorization lookups of the whole batch at once.
+        commandsHandler.prepare(updates);
+        super.onUpdatesReceived(updates);
+        //Send the interactivity writes of the batch together.
+        interactivityHandler.flush();
+    }
+
     @Override
     public void onClosing() {
         logger.info("Bot @{} shutting down...", getBotUsername());
+        //Broadcasts (Checkpointed before the async executor is shutdown)
+        broadcastService.close();
         //Telegram API (Shutdown the async executor)
         super.onClosing();
-        //MongoDB
+        //Authorization audit log
+        if (auditLog != null) auditLog.close();
+        //MongoDB (Write the queued chats tracking changes first)
+        chatsTracker.close();
         mongoClient.close();
+        if (reactiveMongoClient != null) reactiveMongoClient.close();
+        if (mongoCallbacks != null) mongoCallbacks.shutdown();
         //Redis
+        interactivityHandler.close();
         redisConnection.close();
         redisClient.shutdown();
     }
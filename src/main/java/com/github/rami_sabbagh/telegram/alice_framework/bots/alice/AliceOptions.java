@@ -1,5 +1,10 @@
 package com.github.rami_sabbagh.telegram.alice_framework.bots.alice;
 
+import com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.audit.AuditSink;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.audit.Slf4jAuditSink;
+
+import java.nio.file.Path;
+
 public abstract class AliceOptions {
     /* Required configuration */
 
@@ -60,6 +65,30 @@ public abstract class AliceOptions {
         return collection.defaultName();
     }
 
+    /**
+     * Returns whether the framework's MongoDB components should use the reactive streams driver.
+     * <p>
+     * When enabled the chats tracker, the admins authorizer and the admins commands wait for the database
+     * without blocking any thread, over a second MongoDB client.
+     * @return Whether the framework's MongoDB components should use the reactive streams driver.
+     */
+    public boolean reactiveMongo() {
+        return false;
+    }
+
+    /**
+     * Returns whether the known chats and the admins should be loaded into memory at startup.
+     * <p>
+     * It also maintains the {@code AdminTree} of the bot, for answering who promoted whom from memory.
+     * <p>
+     * The admins are then checked from memory, which only sees the admins promoted or demoted by this instance,
+     * so it's suitable only for bots running on a single instance.
+     * @return Whether the known chats and the admins should be loaded into memory at startup.
+     */
+    public boolean warmUpMongo() {
+        return false;
+    }
+
     /**
      * Returns the namespace to use for the bot's fields in the redis database.
      * @return The namespace to use for the bot's fields in the redis database.
@@ -68,6 +97,91 @@ public abstract class AliceOptions {
         return botUsername();
     }
 
+    /**
+     * Returns whether the interactivity sessions should be kept in the process memory instead of redis.
+     * <p>
+     * Suitable only for bots running on a single instance.
+     * @return Whether the interactivity sessions should be kept in the process memory instead of redis.
+     */
+    public boolean inMemoryInteractivity() {
+        return false;
+    }
+
+    /**
+     * Returns the file to snapshot the in-memory interactivity sessions into, so they survive restarts.
+     * @return The file to snapshot the in-memory interactivity sessions into, {@code null} to disable.
+     */
+    public Path interactivitySnapshotFile() {
+        return null;
+    }
+
+    /**
+     * Returns the maximum number of in-memory interactivity sessions, the least recently used are evicted beyond it.
+     * @return The maximum number of in-memory interactivity sessions.
+     */
+    public int interactivityMaxSessions() {
+        return 100_000;
+    }
+
+    /**
+     * Returns the time an in-memory interactivity session can be idle for before it expires.
+     * @return The idle timeout of the in-memory interactivity sessions in seconds, {@code 0} for no limit.
+     */
+    public long interactivityIdleTimeout() {
+        return 0;
+    }
+
+    /**
+     * Returns the interval between the snapshots of the in-memory interactivity sessions.
+     * @return The interval between the snapshots in seconds, {@code 0} to snapshot only on shutdown.
+     */
+    public long interactivitySnapshotInterval() {
+        return 60;
+    }
+
+    /**
+     * Returns whether the interactivity sessions should be written using pipelined async redis commands.
+     * <p>
+     * When enabled the interactivity handler uses a dedicated redis connection, and flushes its' writes in batches.
+     * @return Whether the interactivity sessions should be written using pipelined async redis commands.
+     */
+    public boolean pipelineInteractivity() {
+        return false;
+    }
+
+    /**
+     * Returns the number of recently used interactivity sessions to cache in the process memory.
+     * <p>
+     * The cached sessions are invalidated through redis pub/sub, so every instance of the bot has to enable it.
+     * When enabled, it takes precedence over the pipelined interactivity.
+     * @return The number of interactivity sessions to cache, {@code 0} to disable the cache.
+     */
+    public int interactivityNearCacheSize() {
+        return 0;
+    }
+
+    /**
+     * Returns whether the chats without an interactivity session should be skipped without querying redis.
+     * <p>
+     * When the bot runs on multiple instances, redis keyspace notifications have to be enabled for the sessions
+     * keys ({@code notify-keyspace-events} should include {@code Kgh}).
+     * @return Whether the chats without an interactivity session should be skipped without querying redis.
+     */
+    public boolean filterInactiveChats() {
+        return false;
+    }
+
+    /**
+     * Returns whether the expired interactivity sessions should be delivered to their listeners.
+     * <p>
+     * Requires redis keyspace notifications to be enabled for the sessions keys
+     * ({@code notify-keyspace-events} should include {@code Kx}).
+     * @return Whether the expired interactivity sessions should be delivered to their listeners.
+     */
+    public boolean deliverSessionExpiry() {
+        return false;
+    }
+
     /**
      * Returns whether the default command should be enabled or not.
      * @param command The command under judgement.
@@ -77,6 +191,14 @@ public abstract class AliceOptions {
         return true;
     }
 
+    /**
+     * Returns the sink to write the commands authorization decisions into.
+     * @return The sink to write the authorization decisions into, {@code null} to disable the audit log.
+     */
+    public AuditSink authorizationAuditSink() {
+        return new Slf4jAuditSink();
+    }
+
     public enum Collection {
         /**
          * A collection storing a list of the chats which the bot knows, and their types.
@@ -86,7 +208,17 @@ public abstract class AliceOptions {
         /**
          * A collection storing the ids of the bot admins.
          */
-        ADMINS("admins");
+        ADMINS("admins"),
+
+        /**
+         * A collection storing the progress checkpoints of the broadcasts.
+         */
+        BROADCASTS("broadcasts"),
+
+        /**
+         * A collection storing the pre-computed counters of the chats.
+         */
+        STATS("stats");
 
         private final String defaultName;
 
@@ -114,6 +246,11 @@ public abstract class AliceOptions {
          */
         DEMOTE,
 
+        /**
+         * A command for reporting the chats statistics to the admins.
+         */
+        STATS,
+
         /**
          * A command for cancelling the current interactivity.
          */
@@ -31,6 +31,11 @@ public abstract class Command {
      */
     public final Privacy privacy;
 
+    /**
+     * The permissions bitmask required for using the command, includes the permissions of its privacy level.
+     */
+    public final long permissions;
+
     /**
      * Constructs an instance of the command.
      *
@@ -41,6 +46,20 @@ public abstract class Command {
      * @throws NullPointerException when one of the non-optional parameters is null. Required.
      */
     public Command(String name, String description, Locality locality, Privacy privacy) throws NullPointerException {
+        this(name, description, locality, privacy, Permissions.NONE);
+    }
+
+    /**
+     * Constructs an instance of the command which requires extra permissions.
+     *
+     * @param name        The name of the command, ex: {@code "start"} for <i>/start</i>. Required.
+     * @param description The description of the command, can be {@code null} for no description. Optional.
+     * @param locality    The availability of the command by chat type. Required.
+     * @param privacy     The availability of the command by the user permissions level. Required.
+     * @param permissions The permissions required in addition to the privacy level ones, see {@link Permissions}.
+     * @throws NullPointerException when one of the non-optional parameters is null. Required.
+     */
+    public Command(String name, String description, Locality locality, Privacy privacy, long permissions) throws NullPointerException {
         if (name == null) throw new NullPointerException("name can't be null!");
         if (locality == null) throw new NullPointerException("locality can't be null!");
         if (privacy == null) throw new NullPointerException("privacy can't be null!");
@@ -49,6 +68,7 @@ public abstract class Command {
         this.description = description;
         this.locality = locality;
         this.privacy = privacy;
+        this.permissions = privacy.permissions | permissions;
     }
 
     /**
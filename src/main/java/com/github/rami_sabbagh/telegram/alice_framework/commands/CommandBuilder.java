@@ -12,6 +12,7 @@ public class CommandBuilder {
     protected String description;
     protected Locality locality = Locality.ALL;
     protected Privacy privacy = Privacy.PUBLIC;
+    protected long permissions = Permissions.NONE;
     protected BiConsumer<Message, ParsedCommand> action;
 
     /**
@@ -61,6 +62,17 @@ public class CommandBuilder {
         return this;
     }
 
+    /**
+     * Sets the permissions required by the command in addition to its privacy level ({@code NONE} by default).
+     *
+     * @param permissions The permissions bitmask, see {@link Permissions}.
+     * @return this.
+     */
+    public CommandBuilder permissions(long permissions) {
+        this.permissions = permissions;
+        return this;
+    }
+
     /**
      * Sets the action of the command, <b>required</b>.
      *
@@ -81,7 +93,7 @@ public class CommandBuilder {
     public Command build() {
         if (name == null) throw new NullPointerException("Command's name has not been set!");
         if (action == null) throw new NullPointerException("Command's action has not been set!");
-        return new ConstructedCommand(name, description, locality, privacy, action);
+        return new ConstructedCommand(name, description, locality, privacy, permissions, action);
     }
 
     /**
@@ -93,8 +105,8 @@ public class CommandBuilder {
          */
         protected final BiConsumer<Message, ParsedCommand> action;
 
-        private ConstructedCommand(String name, String description, Locality locality, Privacy privacy, BiConsumer<Message, ParsedCommand> action) {
-            super(name, description, locality, privacy);
+        private ConstructedCommand(String name, String description, Locality locality, Privacy privacy, long permissions, BiConsumer<Message, ParsedCommand> action) {
+            super(name, description, locality, privacy, permissions);
             this.action = action;
         }
 
@@ -1,13 +1,16 @@
 package com.github.rami_sabbagh.telegram.alice_framework.commands;
 
 import com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.Authorizer;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.BatchAuthorizer;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.DefaultAuthorizer;
 import com.github.rami_sabbagh.telegram.alice_framework.pipes.Handler;
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.ChatUtilities;
 import com.github.rami_sabbagh.telegram.alice_framework.utilities.SilentExecutor;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -137,6 +140,34 @@ public class CommandsHandler implements Handler<Update> {
         }
     }
 
+    /**
+     * Prepares the authorization of the commands in a batch of updates, when the authorizer supports batches.
+     * <p>
+     * This should be called before the updates are processed, so the authorizer lookups are done in bulk.
+     *
+     * @param updates The batch of updates to be processed.
+     */
+    public void prepare(List<Update> updates) {
+        if (!(authorizer instanceof BatchAuthorizer)) return;
+
+        Map<ParsedCommand, Command> batch = new HashMap<>();
+        for (Update update : updates) {
+            if (!update.hasMessage() || !update.getMessage().isCommand()) continue;
+            Message message = update.getMessage();
+            ParsedCommand parsedCommand = ParsedCommand.parse(message);
+
+            //Skip the commands which are not addressed to the bot.
+            if (parsedCommand.username == null ? ChatUtilities.getChatType(message) != ChatUtilities.ChatType.USER : !parsedCommand.username.equals(botUsername))
+                continue;
+
+            Command command = commands.get(parsedCommand.name);
+            if (command != null) batch.put(parsedCommand, command);
+        }
+
+        //A single command has nothing to gain from the bulk lookups.
+        if (batch.size() > 1) ((BatchAuthorizer) authorizer).prepare(batch);
+    }
+
     @Override
     public boolean process(Update update) {
         //Ignore non-message updates.
@@ -150,11 +181,12 @@ public class CommandsHandler implements Handler<Update> {
         ParsedCommand parsedCommand = ParsedCommand.parse(message);
 
         //Check the username in the command.
+        boolean userChat = ChatUtilities.getChatType(message) == ChatUtilities.ChatType.USER;
         if (parsedCommand.username == null) {
-            if (!message.isUserMessage())
+            if (!userChat)
                 return true; //The update got consumed, a command without the username postfix under a group.
         } else if (!parsedCommand.username.equals(botUsername)) {
-            if (message.isUserMessage())
+            if (userChat)
                 silent.compose().text("You're requesting an another bot's command from me 😅") //EASTER_EGG
                         .chatId(message).send();
             return true; //The update got consumed, it's a command for an another bot.
@@ -0,0 +1,79 @@
+package com.github.rami_sabbagh.telegram.alice_framework.commands;
+
+/**
+ * The permission bits which commands can require, and users can be granted.
+ * <p>
+ * A command declares the permissions it requires as a bitmask, and the authorizer resolves the permissions
+ * granted to the user as another bitmask, so checking any command is a single {@code AND}.
+ * <p>
+ * The lower 8 bits are reserved for the framework, custom roles can use the bits returned by {@link #custom(int)}.
+ */
+public final class Permissions {
+
+    /**
+     * No permissions, required by public commands.
+     */
+    public static final long NONE = 0L;
+
+    /**
+     * Granted to group admins, bot admins and bot owners.
+     */
+    public static final long GROUP_ADMIN = 1L;
+
+    /**
+     * Granted to bot admins and bot owners.
+     */
+    public static final long ADMIN = 1L << 1;
+
+    /**
+     * Granted to the bot owners only.
+     */
+    public static final long OWNER = 1L << 2;
+
+    /**
+     * The bits reserved for the framework's permissions.
+     */
+    public static final long RESERVED = 0xFFL;
+
+    /**
+     * All the permissions implied by being a bot admin.
+     */
+    public static final long ADMIN_GRANTS = ADMIN | GROUP_ADMIN;
+
+    /**
+     * All the permissions implied by being a bot owner.
+     */
+    public static final long OWNER_GRANTS = OWNER | ADMIN | GROUP_ADMIN;
+
+    /**
+     * The number of bits available for custom permissions.
+     */
+    public static final int CUSTOM_COUNT = 56;
+
+    private Permissions() {
+    }
+
+    /**
+     * Gets the bit of a custom permission.
+     *
+     * @param index The index of the custom permission, between {@code 0} and {@code CUSTOM_COUNT - 1}.
+     * @return The bit of the custom permission.
+     * @throws IllegalArgumentException when the index is out of range.
+     */
+    public static long custom(int index) throws IllegalArgumentException {
+        if (index < 0 || index >= CUSTOM_COUNT)
+            throw new IllegalArgumentException("Custom permission index out of range: " + index);
+        return 1L << (8 + index);
+    }
+
+    /**
+     * Checks if the granted permissions cover all the required ones.
+     *
+     * @param granted  The permissions granted to the user.
+     * @param required The permissions required by the command.
+     * @return {@code true} if all the required permissions are granted.
+     */
+    public static boolean allows(long granted, long required) {
+        return (granted & required) == required;
+    }
+}
@@ -8,20 +8,29 @@ public enum Privacy {
     /**
      * Can be used by anyone.
      */
-    PUBLIC,
+    PUBLIC(Permissions.NONE),
 
     /**
      * Can be used only by group admins, bot admins and bot owners.
      */
-    GROUP_ADMIN,
+    GROUP_ADMIN(Permissions.GROUP_ADMIN),
 
     /**
      * Can be only used by bot admins and bot owners.
      */
-    ADMIN,
+    ADMIN(Permissions.ADMIN),
 
     /**
      * Can be used only by the bot owners.
      */
-    OWNER
+    OWNER(Permissions.OWNER);
+
+    /**
+     * The permissions bitmask required by the privacy level.
+     */
+    public final long permissions;
+
+    Privacy(long permissions) {
+        this.permissions = permissions;
+    }
 }
@@ -0,0 +1,81 @@
+package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+
+/**
+ * The Prometheus metrics of the commands authorization, registered in the default registry.
+ */
+public final class AuthorizerMetrics {
+
+    /**
+     * The time spent in each type of authorization check, labeled by {@code check}.
+     */
+    public static final Histogram checkDuration = Histogram.build()
+            .name("alice_authorization_check_seconds")
+            .help("Time spent in commands authorization checks.")
+            .labelNames("check")
+            .exponentialBuckets(0.00001, 10, 7)
+            .register();
+
+    /**
+     * The authorization decisions count, labeled by {@code outcome}.
+     */
+    public static final Counter decisions = Counter.build()
+            .name("alice_authorization_decisions_total")
+            .help("Commands authorization decisions.")
+            .labelNames("outcome")
+            .register();
+
+    /**
+     * The lookups answered by the authorizers caches, labeled by {@code cache} and {@code result}.
+     */
+    public static final Counter cacheLookups = Counter.build()
+            .name("alice_authorization_cache_lookups_total")
+            .help("Lookups answered by the authorization caches.")
+            .labelNames("cache", "result")
+            .register();
+
+    /**
+     * The locality level checks.
+     */
+    public static final Histogram.Child localityCheck = checkDuration.labels("locality");
+
+    /**
+     * The privacy level and permissions checks, including the lookups they do.
+     */
+    public static final Histogram.Child privacyCheck = checkDuration.labels("privacy");
+
+    /**
+     * The group admin status requests to Telegram.
+     */
+    public static final Histogram.Child groupAdminCheck = checkDuration.labels("group_admin");
+
+    /**
+     * The bot admin lookups.
+     */
+    public static final Histogram.Child adminCheck = checkDuration.labels("admin");
+
+    /**
+     * The authorized commands requests.
+     */
+    public static final Counter.Child accepted = decisions.labels("accepted");
+
+    /**
+     * The rejected commands requests.
+     */
+    public static final Counter.Child rejected = decisions.labels("rejected");
+
+    /**
+     * The lookups answered from a prepared batch.
+     */
+    public static final Counter.Child batchHits = cacheLookups.labels("batch", "hit");
+
+    /**
+     * The lookups of prepared batch messages which had to be done individually.
+     */
+    public static final Counter.Child batchMisses = cacheLookups.labels("batch", "miss");
+
+    private AuthorizerMetrics() {
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers;
+
+import com.github.rami_sabbagh.telegram.alice_framework.commands.Command;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.ParsedCommand;
+
+import java.util.Map;
+
+/**
+ * An authorizer which can resolve the lookups of a whole batch of commands at once.
+ */
+public interface BatchAuthorizer extends Authorizer {
+    /**
+     * Resolves the lookups needed for authorizing a batch of commands in bulk.
+     * <p>
+     * The following {@code authorize} calls for the commands of the batch are answered from the batch result,
+     * while any other command is authorized normally.
+     *
+     * @param batch The parsed commands requested by the users, mapped to the command implementations to execute.
+     */
+    void prepare(Map<ParsedCommand, Command> batch);
+}
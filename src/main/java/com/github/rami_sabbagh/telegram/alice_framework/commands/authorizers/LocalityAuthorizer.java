@@ -3,6 +3,8 @@ package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.Command;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.Locality;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.ParsedCommand;
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.ChatUtilities;
+import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.api.objects.Chat;
 
 /**
@@ -17,7 +19,7 @@ public interface LocalityAuthorizer extends Authorizer {
      * @return {@code true} if it's a private chat.
      */
     default boolean isUserChat(Chat chat) {
-        return chat.isUserChat();
+        return ChatUtilities.getChatType(chat) == ChatUtilities.ChatType.USER;
     }
 
     /**
@@ -27,7 +29,7 @@ public interface LocalityAuthorizer extends Authorizer {
      * @return {@code true} if it's a group or super group chat.
      */
     default boolean isGroupChat(Chat chat) {
-        return chat.isGroupChat() || chat.isSuperGroupChat();
+        return ChatUtilities.getChatType(chat).isGroup();
     }
 
     /**
@@ -51,7 +53,7 @@ public interface LocalityAuthorizer extends Authorizer {
                 if (isGroupChat(chat)) return null;
                 return parsedCommand + " is available only in groups ⚠";
             default:
-                new Exception("Unsupported command locality level: " + locality.name()).printStackTrace(); //TODO: Debug logging using SLF4J.
+                LoggerFactory.getLogger(LocalityAuthorizer.class).error("Unsupported command locality level: {}", locality.name());
                 return "An issue has occurred while executing the command ⚠";
         }
     }
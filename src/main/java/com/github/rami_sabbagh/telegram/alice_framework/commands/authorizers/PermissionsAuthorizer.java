@@ -0,0 +1,57 @@
+package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers;
+
+import com.github.rami_sabbagh.telegram.alice_framework.commands.Command;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.ParsedCommand;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.Permissions;
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+/**
+ * Determines if a command can be executed according to its' locality level and the permissions bitmask it requires.
+ */
+public interface PermissionsAuthorizer extends LocalityAuthorizer {
+
+    /**
+     * Resolves the permissions granted to the sender of a message.
+     * <p>
+     * Implementations may skip the lookups which can't affect the required permissions,
+     * so the result is only guaranteed to be complete for the bits in {@code required}.
+     *
+     * @param message  The message from the user to check.
+     * @param required The permissions bitmask required by the command.
+     * @return The permissions bitmask granted to the user.
+     */
+    long resolvePermissions(Message message, long required);
+
+    /**
+     * Checks if the user has all the permissions required by the command.
+     *
+     * @param parsedCommand The parsed command request by the user.
+     * @param command       The command implementation to execute.
+     * @return {@code null} if it was valid, otherwise the rejection reason.
+     */
+    default String checkPermissions(ParsedCommand parsedCommand, Command command) {
+        long required = command.permissions;
+        if (required == Permissions.NONE) return null; //Always authorized for anyone.
+
+        long granted = resolvePermissions(parsedCommand.origin, required);
+        if (Permissions.allows(granted, required)) return null;
+
+        long missing = required & ~granted;
+        if ((missing & Permissions.OWNER) != 0)
+            return "Only the bot owners are allowed to use this command ⚠";
+        if ((missing & Permissions.ADMIN) != 0)
+            return "Only the bot staff are allowed to use this command ⚠";
+        if ((missing & Permissions.GROUP_ADMIN) != 0)
+            return "Only group admins are allowed to use this commands ⚠";
+        return "You don't have the permissions required to use this command ⚠";
+    }
+
+    @Override
+    default String authorize(ParsedCommand parsedCommand, Command command) {
+        String rejectionReason = checkLocality(parsedCommand, command);
+        if (rejectionReason != null) return rejectionReason;
+
+        rejectionReason = checkPermissions(parsedCommand, command);
+        return rejectionReason;
+    }
+}
@@ -3,6 +3,7 @@ package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.Command;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.ParsedCommand;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.Privacy;
+import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.api.objects.Message;
 
 /**
@@ -63,7 +64,7 @@ public interface PrivacyAuthorizer extends Authorizer {
                         return "Only the bot owners are allowed to use this command ⚠";
                 }
             default:
-                new Exception("Unsupported command privacy level: " + command.privacy.name()).printStackTrace(); //TODO: Debug logging using SLF4J.
+                LoggerFactory.getLogger(PrivacyAuthorizer.class).error("Unsupported command privacy level: {}", command.privacy.name());
                 return "An issue has occurred while executing the command ⚠";
         }
     }
@@ -0,0 +1,17 @@
+package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers;
+
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+/**
+ * A custom role which grants permissions to its' members. (functional interface).
+ */
+@FunctionalInterface
+public interface Role {
+    /**
+     * Resolves the permissions granted by the role to the sender of a message.
+     *
+     * @param message The message from the user to check.
+     * @return The permissions bitmask granted by the role, {@code Permissions.NONE} if the user is not a member.
+     */
+    long grants(Message message);
+}
@@ -1,22 +1,45 @@
 package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers;
 
+import com.github.rami_sabbagh.telegram.alice_framework.commands.Command;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.ParsedCommand;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.Permissions;
 import com.github.rami_sabbagh.telegram.alice_framework.utilities.SilentExecutor;
+import io.prometheus.client.Histogram;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatAdministrators;
 import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatMember;
 import org.telegram.telegrambots.meta.api.objects.ChatMember;
 import org.telegram.telegrambots.meta.api.objects.Message;
 
+import java.util.*;
+
 /**
  * A {@code BasicAuthorizer} which has a {@code SilentExecutor} for requesting extra information about its' users.
  * <p>
  * It has the isGroupAdmin method implemented by requesting the {@code ChatMember} data about the user.
+ * <p>
+ * Commands are authorized using their permissions bitmask, which is resolved from the owner, admin and group admin
+ * checks, in addition to any registered custom roles.
+ * <p>
+ * A batch of commands can be prepared ahead, so the admins are looked up in bulk,
+ * and each group chat's administrators are requested only once.
  */
-public abstract class StandardAuthorizer implements BasicAuthorizer {
+public abstract class StandardAuthorizer implements BasicAuthorizer, PermissionsAuthorizer, BatchAuthorizer {
 
     /**
      * The SilentExecutor used for looking up more information about the users in the authorization process.
      */
     protected final SilentExecutor silent;
 
+    /**
+     * The custom roles registered in the authorizer.
+     */
+    protected final List<Role> roles = new ArrayList<>();
+
+    /**
+     * The lookups result of the last prepared batch, {@code null} if none was prepared.
+     */
+    protected volatile Batch batch;
+
     /**
      * Constructs a new instance.
      *
@@ -26,6 +49,55 @@ public abstract class StandardAuthorizer implements BasicAuthorizer {
         this.silent = silent;
     }
 
+    /**
+     * Registers a custom role which can grant permissions to users.
+     *
+     * @param role The role to register.
+     */
+    public void registerRole(Role role) {
+        roles.add(role);
+    }
+
+    /**
+     * Unregisters a custom role.
+     *
+     * @param role The role to unregister.
+     * @return {@code true} if the role was registered previously.
+     */
+    public boolean unregisterRole(Role role) {
+        return roles.remove(role);
+    }
+
+    /**
+     * Checks if the message is from a bot admin, recording the lookup time.
+     *
+     * @param message The message to check.
+     * @return {@code true} if it's from a bot admin, {@code false} otherwise.
+     */
+    protected boolean timedIsAdmin(Message message) {
+        Histogram.Timer timer = AuthorizerMetrics.adminCheck.startTimer();
+        try {
+            return isAdmin(message);
+        } finally {
+            timer.observeDuration();
+        }
+    }
+
+    /**
+     * Checks if the message is from a group admin, recording the lookup time.
+     *
+     * @param message The message from the user to check.
+     * @return {@code true} if it's from a group admin, {@code false} otherwise.
+     */
+    protected boolean timedIsGroupAdmin(Message message) {
+        Histogram.Timer timer = AuthorizerMetrics.groupAdminCheck.startTimer();
+        try {
+            return isGroupAdmin(message);
+        } finally {
+            timer.observeDuration();
+        }
+    }
+
     @Override
     public boolean isGroupAdmin(Message message) {
         if (isUserChat(message.getChat())) return true; //Users are group admins of their private chats.
@@ -37,4 +109,173 @@ public abstract class StandardAuthorizer implements BasicAuthorizer {
 
         return member.getStatus().equals("administrator") || member.getStatus().equals("creator");
     }
+
+    /**
+     * Looks up which of the senders of the messages are bot admins.
+     * <p>
+     * The default implementation checks each message using {@code isAdmin}, implementations backed by a database
+     * should override it with a single query.
+     *
+     * @param messages The messages from the users to check.
+     * @return The user ids of the bot admins among the senders.
+     */
+    protected Set<Integer> lookupAdmins(Collection<Message> messages) {
+        Set<Integer> admins = new HashSet<>();
+        for (Message message : messages)
+            if (isAdmin(message)) admins.add(message.getFrom().getId());
+        return admins;
+    }
+
+    /**
+     * Looks up the administrators of a group chat.
+     *
+     * @param chatId The id of the group chat.
+     * @return The user ids of the chat administrators, {@code null} on failure.
+     */
+    protected Set<Integer> lookupGroupAdmins(long chatId) {
+        List<ChatMember> members = silent.execute(new GetChatAdministrators().setChatId(chatId));
+        if (members == null) return null;
+
+        Set<Integer> groupAdmins = new HashSet<>();
+        for (ChatMember member : members)
+            groupAdmins.add(member.getUser().getId());
+        return groupAdmins;
+    }
+
+    @Override
+    public void prepare(Map<ParsedCommand, Command> batch) {
+        List<Message> adminCandidates = new ArrayList<>();
+        List<Message> groupAdminCandidates = new ArrayList<>();
+        Set<Message> messages = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (Map.Entry<ParsedCommand, Command> entry : batch.entrySet()) {
+            Message message = entry.getKey().origin;
+            long framework = entry.getValue().permissions & Permissions.RESERVED;
+            messages.add(message);
+
+            if (framework == Permissions.NONE || isOwner(message)) continue;
+            if ((framework & ~Permissions.ADMIN_GRANTS) == 0) adminCandidates.add(message);
+            if (framework == Permissions.GROUP_ADMIN && !isUserChat(message.getChat()))
+                groupAdminCandidates.add(message);
+        }
+
+        Set<Integer> admins = Set.of();
+        if (!adminCandidates.isEmpty()) {
+            Histogram.Timer timer = AuthorizerMetrics.adminCheck.startTimer();
+            try {
+                admins = lookupAdmins(adminCandidates);
+            } finally {
+                timer.observeDuration();
+            }
+        }
+
+        Map<Long, Set<Integer>> groupAdmins = new HashMap<>();
+        for (Message message : groupAdminCandidates) {
+            long chatId = message.getChatId();
+            if (admins.contains(message.getFrom().getId()) || groupAdmins.containsKey(chatId)) continue;
+            Histogram.Timer timer = AuthorizerMetrics.groupAdminCheck.startTimer();
+            try {
+                groupAdmins.put(chatId, lookupGroupAdmins(chatId));
+            } finally {
+                timer.observeDuration();
+            }
+        }
+
+        this.batch = new Batch(messages, admins, groupAdmins);
+    }
+
+    @Override
+    public long resolvePermissions(Message message, long required) {
+        long granted = Permissions.NONE;
+
+        //Answer from the prepared batch if the message belongs to it.
+        Batch batch = this.batch;
+        if (batch != null && !batch.messages.contains(message)) batch = null;
+
+        //The checks are ordered from the cheapest to the most expensive, and each is skipped if it can't help.
+        long framework = required & Permissions.RESERVED;
+        if (framework != Permissions.NONE) {
+            if (isOwner(message))
+                granted |= Permissions.OWNER_GRANTS;
+            else if ((framework & ~Permissions.ADMIN_GRANTS) == 0 && (batch == null ? timedIsAdmin(message) : batch.isAdmin(message)))
+                granted |= Permissions.ADMIN_GRANTS;
+            else if (framework == Permissions.GROUP_ADMIN && (batch == null ? timedIsGroupAdmin(message) : batch.isGroupAdmin(message)))
+                granted |= Permissions.GROUP_ADMIN;
+        }
+
+        for (Role role : roles) {
+            if (Permissions.allows(granted, required)) break;
+            granted |= role.grants(message);
+        }
+
+        return granted;
+    }
+
+    @Override
+    public String authorize(ParsedCommand parsedCommand, Command command) {
+        String rejectionReason;
+
+        Histogram.Timer localityTimer = AuthorizerMetrics.localityCheck.startTimer();
+        try {
+            rejectionReason = checkLocality(parsedCommand, command);
+        } finally {
+            localityTimer.observeDuration();
+        }
+
+        if (rejectionReason == null) {
+            Histogram.Timer privacyTimer = AuthorizerMetrics.privacyCheck.startTimer();
+            try {
+                rejectionReason = checkPermissions(parsedCommand, command);
+            } finally {
+                privacyTimer.observeDuration();
+            }
+        }
+
+        if (rejectionReason == null) AuthorizerMetrics.accepted.inc();
+        else AuthorizerMetrics.rejected.inc();
+
+        return rejectionReason;
+    }
+
+    /**
+     * The lookups result of a prepared batch of commands.
+     */
+    protected class Batch {
+        /**
+         * The origin messages of the batch commands, compared by identity.
+         */
+        protected final Set<Message> messages;
+
+        /**
+         * The user ids of the bot admins among the batch users.
+         */
+        protected final Set<Integer> admins;
+
+        /**
+         * The administrators of the batch group chats, mapped to {@code null} when the lookup failed.
+         */
+        protected final Map<Long, Set<Integer>> groupAdmins;
+
+        protected Batch(Set<Message> messages, Set<Integer> admins, Map<Long, Set<Integer>> groupAdmins) {
+            this.messages = messages;
+            this.admins = admins;
+            this.groupAdmins = groupAdmins;
+        }
+
+        protected boolean isAdmin(Message message) {
+            AuthorizerMetrics.batchHits.inc();
+            return admins.contains(message.getFrom().getId());
+        }
+
+        protected boolean isGroupAdmin(Message message) {
+            Set<Integer> chatAdmins = groupAdmins.get(message.getChatId());
+            if (chatAdmins == null) { //Not resolved in bulk.
+                AuthorizerMetrics.batchMisses.inc();
+                return timedIsGroupAdmin(message);
+            }
+
+            AuthorizerMetrics.batchHits.inc();
+            return chatAdmins.contains(message.getFrom().getId());
+        }
+    }
 }
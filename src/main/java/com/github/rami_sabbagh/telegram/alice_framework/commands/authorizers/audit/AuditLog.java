@@ -0,0 +1,145 @@
+package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An asynchronous stream of authorization events, written into a sink by a background thread.
+ * <p>
+ * The events are published into a bounded ring buffer without blocking nor locking,
+ * when the buffer is full the events are dropped and counted instead of slowing down the commands.
+ */
+public class AuditLog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+
+    /**
+     * How long the writer thread sleeps when the buffer is empty.
+     */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AuditSink sink;
+    private final AtomicReferenceArray<AuthorizationEvent> slots;
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * The sequence of the next slot to be claimed by a publisher.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The sequence of the next slot to be written into the sink, only advanced by the writer thread.
+     */
+    private volatile long head;
+
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /**
+     * Creates an audit log with a buffer of 4096 events.
+     *
+     * @param sink The sink to write the events into.
+     */
+    public AuditLog(AuditSink sink) {
+        this(sink, 4096);
+    }
+
+    /**
+     * Creates an audit log, and starts its' writer thread.
+     *
+     * @param sink     The sink to write the events into.
+     * @param capacity The capacity of the events buffer, rounded up to a power of 2.
+     */
+    public AuditLog(AuditSink sink, int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive!");
+        int size = 1;
+        while (size < capacity) size <<= 1;
+
+        this.sink = sink;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+
+        writer = new Thread(this::drain, "alice-authorization-audit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Publishes an event into the log, without blocking.
+     *
+     * @param event The event to publish.
+     * @return {@code true} if it was published, {@code false} if it got dropped because the buffer was full.
+     */
+    public boolean publish(AuthorizationEvent event) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= capacity) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        slots.lazySet((int) sequence & mask, event);
+        return true;
+    }
+
+    /**
+     * Gets the number of events dropped because the buffer was full.
+     *
+     * @return The number of dropped events.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void drain() {
+        while (running || head != tail.get()) {
+            int index = (int) head & mask;
+            AuthorizationEvent event = slots.get(index);
+
+            if (event == null) {
+                //Either the buffer is empty, or a publisher claimed the slot and is still writing it.
+                if (head == tail.get()) LockSupport.parkNanos(IDLE_NANOS);
+                else Thread.onSpinWait();
+                continue;
+            }
+
+            slots.lazySet(index, null);
+            //noinspection NonAtomicOperationOnVolatileField
+            head++; //Only this thread writes the head.
+
+            try {
+                sink.write(event);
+            } catch (RuntimeException e) {
+                logger.error("Failed to write an authorization event", e);
+            }
+        }
+    }
+
+    /**
+     * Stops the writer thread after writing the remaining events.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long lost = getDropped();
+        if (lost > 0) logger.warn("Dropped {} authorization events because the audit buffer was full", lost);
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.audit;
+
+/**
+ * A destination for the authorization audit events. (functional interface).
+ * <p>
+ * The sink is called from the audit log's background thread only, so it may block without affecting the commands.
+ */
+@FunctionalInterface
+public interface AuditSink {
+    /**
+     * Writes an authorization event.
+     *
+     * @param event The event to write.
+     */
+    void write(AuthorizationEvent event);
+}
@@ -0,0 +1,54 @@
+package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.audit;
+
+import com.github.rami_sabbagh.telegram.alice_framework.commands.Command;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.ParsedCommand;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.Authorizer;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.BatchAuthorizer;
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+import java.util.Map;
+
+/**
+ * An authorizer which publishes the decisions of another authorizer into an audit log.
+ */
+public class AuditedAuthorizer implements BatchAuthorizer {
+
+    /**
+     * The authorizer making the decisions.
+     */
+    protected final Authorizer authorizer;
+
+    /**
+     * The audit log to publish the decisions into.
+     */
+    protected final AuditLog auditLog;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param authorizer The authorizer making the decisions.
+     * @param auditLog   The audit log to publish the decisions into.
+     */
+    public AuditedAuthorizer(Authorizer authorizer, AuditLog auditLog) {
+        this.authorizer = authorizer;
+        this.auditLog = auditLog;
+    }
+
+    @Override
+    public void prepare(Map<ParsedCommand, Command> batch) {
+        if (authorizer instanceof BatchAuthorizer) ((BatchAuthorizer) authorizer).prepare(batch);
+    }
+
+    @Override
+    public String authorize(ParsedCommand parsedCommand, Command command) {
+        long start = System.nanoTime();
+        String rejectionReason = authorizer.authorize(parsedCommand, command);
+        long latency = System.nanoTime() - start;
+
+        Message origin = parsedCommand.origin;
+        auditLog.publish(new AuthorizationEvent(System.currentTimeMillis(), origin.getFrom().getId(),
+                origin.getChatId(), command.name, rejectionReason, latency));
+
+        return rejectionReason;
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.audit;
+
+/**
+ * Represents a single authorization decision made for a command request.
+ */
+public class AuthorizationEvent {
+    /**
+     * The time of the decision, in milliseconds since the epoch.
+     */
+    public final long timestamp;
+
+    /**
+     * The id of the user who requested the command.
+     */
+    public final int userId;
+
+    /**
+     * The id of the chat the command was requested in.
+     */
+    public final long chatId;
+
+    /**
+     * The name of the requested command.
+     */
+    public final String command;
+
+    /**
+     * Whether the command was authorized or not.
+     */
+    public final boolean accepted;
+
+    /**
+     * The rejection reason, {@code null} when accepted.
+     */
+    public final String reason;
+
+    /**
+     * The time spent on the decision, in nanoseconds.
+     */
+    public final long latency;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param timestamp The time of the decision, in milliseconds since the epoch.
+     * @param userId    The id of the user who requested the command.
+     * @param chatId    The id of the chat the command was requested in.
+     * @param command   The name of the requested command.
+     * @param reason    The rejection reason, {@code null} when accepted.
+     * @param latency   The time spent on the decision, in nanoseconds.
+     */
+    public AuthorizationEvent(long timestamp, int userId, long chatId, String command, String reason, long latency) {
+        this.timestamp = timestamp;
+        this.userId = userId;
+        this.chatId = chatId;
+        this.command = command;
+        this.accepted = reason == null;
+        this.reason = reason;
+        this.latency = latency;
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An audit sink which writes the events into SLF4J as {@code key=value} pairs.
+ * <p>
+ * Rejections are logged at the {@code INFO} level, and acceptances at the {@code DEBUG} level.
+ */
+public class Slf4jAuditSink implements AuditSink {
+
+    /**
+     * The logger to write the events into.
+     */
+    protected final Logger logger;
+
+    /**
+     * Creates a sink which writes into the {@code AuthorizationEvent} logger.
+     */
+    public Slf4jAuditSink() {
+        this(LoggerFactory.getLogger(AuthorizationEvent.class));
+    }
+
+    /**
+     * Creates a sink which writes into a specific logger.
+     *
+     * @param logger The logger to write the events into.
+     */
+    public Slf4jAuditSink(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public void write(AuthorizationEvent event) {
+        if (event.accepted) {
+            if (logger.isDebugEnabled())
+                logger.debug("time={} user={} chat={} command={} decision=accepted latency={}us",
+                        event.timestamp, event.userId, event.chatId, event.command, event.latency / 1000);
+        } else {
+            logger.info("time={} user={} chat={} command={} decision=rejected reason=\"{}\" latency={}us",
+                    event.timestamp, event.userId, event.chatId, event.command, event.reason, event.latency / 1000);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * An asynchronous audit stream of the authorization decisions, for analyzing the usage and abuse of commands.
+ */
+package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.audit;
@@ -1,19 +1,128 @@
 package com.github.rami_sabbagh.telegram.alice_framework.interactivity;
 
 import com.github.rami_sabbagh.telegram.alice_framework.pipes.Handler;
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.ConcurrentLongSet;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dispatches the messages of the chats to their active interactivity listeners.
+ * <p>
+ * Each chat has a main session, and can have any number of sessions bound to bot messages, which process
+ * the replies to their messages only. So several listeners can be active in a chat at the same time.
+ * <p>
+ * The transitions of each chat (activation, processing and deactivation) are serialized by a striped lock,
+ * so the concurrent messages of a chat don't interleave within an instance. Across instances, the storage backends
+ * can reject a write based on a stale session (see {@code InteractivitySession.version}).
+ * <p>
+ * A listener shouldn't activate or deactivate listeners of other chats while processing a message,
+ * as holding the locks of two chats can deadlock.
+ */
+public abstract class InteractivityHandler implements Handler<Update>, AutoCloseable {
+
+    private static final int LOCK_STRIPES = 64;
 
-public abstract class InteractivityHandler implements Handler<Update> {
+    /**
+     * The {@code replyTo} of the chats main sessions, which are not bound to a bot message.
+     */
+    protected static final int MAIN_SESSION = 0;
 
     protected Map<String, InteractivityListener> listeners = new HashMap<>();
 
+    /**
+     * The indices the listener ids are interned into, including the ids interned before their listener is registered
+     * (ex: loaded from a snapshot), guarded by itself for the writes.
+     */
+    private final Map<String, Integer> listenerIndices = new ConcurrentHashMap<>();
+
+    /**
+     * The registered listeners by their interned index, {@code null} for the ids without a registered listener.
+     * Replaced as a whole when modified, guarded by the listener indices.
+     */
+    private volatile InteractivityListener[] indexedListeners = new InteractivityListener[0];
+
+    /**
+     * The striped locks of the chats transitions.
+     */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    {
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new Object();
+    }
+
+    /**
+     * The chats which may have an active listener, {@code null} when the filter is disabled.
+     * <p>
+     * When enabled, it has to contain every chat with an active session, so the other chats can skip loading it.
+     */
+    protected volatile ConcurrentLongSet activeChats;
+
     public void registerListener(String listenerId, InteractivityListener listener) {
         assert !listeners.containsKey(listenerId) : "A listener is already registered under the same id '" + listenerId + "'!";
         listeners.put(listenerId, listener);
+
+        synchronized (listenerIndices) {
+            int index = internListener(listenerId);
+            InteractivityListener[] indexed = indexedListeners.clone();
+            indexed[index] = listener;
+            indexedListeners = indexed;
+        }
+    }
+
+    /**
+     * Interns a listener id into a small index, which is local to the process.
+     *
+     * @param listenerId The listener id, which doesn't need to be registered yet.
+     * @return The index of the listener id.
+     */
+    protected int internListener(String listenerId) {
+        Integer index = listenerIndices.get(listenerId);
+        if (index != null) return index;
+
+        synchronized (listenerIndices) {
+            index = listenerIndices.get(listenerId);
+            if (index != null) return index;
+
+            index = listenerIndices.size();
+            indexedListeners = Arrays.copyOf(indexedListeners, index + 1);
+            listenerIndices.put(listenerId, index);
+            return index;
+        }
+    }
+
+    /**
+     * Gets the listener of a session, by its' interned index when resolved.
+     *
+     * @param session The session.
+     * @return The listener, {@code null} if it's not registered.
+     */
+    protected InteractivityListener listenerOf(InteractivitySession session) {
+        int index = session.listenerIndex;
+        if (index < 0) {
+            Integer interned = listenerIndices.get(session.listenerId);
+            if (interned == null) return null;
+            index = interned;
+        }
+
+        InteractivityListener[] indexed = indexedListeners;
+        return index < indexed.length ? indexed[index] : null;
+    }
+
+    /**
+     * Gets the session timeout of a listener by its' interned index.
+     *
+     * @param listenerIndex The index of the listener id.
+     * @return The session timeout in seconds, {@code 0} if the sessions never expire or the listener is unknown.
+     */
+    protected long sessionTimeout(int listenerIndex) {
+        InteractivityListener[] indexed = indexedListeners;
+        InteractivityListener listener = listenerIndex >= 0 && listenerIndex < indexed.length ? indexed[listenerIndex] : null;
+        return listener == null ? 0 : listener.sessionTimeout();
     }
 
     public void activateListener(long chatId, String listenerId) {
@@ -21,23 +130,69 @@ public abstract class InteractivityHandler implements Handler<Update> {
     }
 
     public void activateListener(long chatId, String listenerId, Map<String, String> initData) {
+        activate(chatId, MAIN_SESSION, listenerId, initData);
+    }
+
+    /**
+     * Activates a listener for the replies to a bot message, alongside the other active listeners of the chat.
+     * <p>
+     * The replies to the message are dispatched to this listener, and any other message of the chat
+     * is dispatched to the chat's main listener (activated by {@code activateListener}).
+     *
+     * @param chatId       The chat id.
+     * @param botMessageId The id of the bot message which the listener processes the replies to.
+     * @param listenerId   The listener id.
+     */
+    public void activateReplyListener(long chatId, int botMessageId, String listenerId) {
+        activateReplyListener(chatId, botMessageId, listenerId, new HashMap<>());
+    }
+
+    /**
+     * Activates a listener for the replies to a bot message, alongside the other active listeners of the chat.
+     * <p>
+     * The replies to the message are dispatched to this listener, and any other message of the chat
+     * is dispatched to the chat's main listener (activated by {@code activateListener}).
+     *
+     * @param chatId       The chat id.
+     * @param botMessageId The id of the bot message which the listener processes the replies to.
+     * @param listenerId   The listener id.
+     * @param initData     The initial state data of the listener.
+     */
+    public void activateReplyListener(long chatId, int botMessageId, String listenerId, Map<String, String> initData) {
+        if (botMessageId <= 0) throw new IllegalArgumentException("Invalid bot message id: " + botMessageId);
+        activate(chatId, botMessageId, listenerId, initData);
+    }
+
+    /**
+     * Activates a listener on a session of a chat, replacing its' previous listener.
+     *
+     * @param chatId     The chat id.
+     * @param replyTo    The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @param listenerId The listener id.
+     * @param initData   The initial state data of the listener.
+     */
+    protected void activate(long chatId, int replyTo, String listenerId, Map<String, String> initData) {
         assert listeners.containsKey(listenerId) : "Unknown listener '" + listenerId + "'!";
 
-        //Deactivate the previous listener if there is one.
-        deactivateListener(chatId);
+        synchronized (lockFor(chatId)) {
+            //Deactivate the previous listener if there is one.
+            deactivate(chatId, replyTo);
 
-        InteractivityState state = new InteractivityState(initData, null);
-        InteractivityListener listener = listeners.get(listenerId);
+            InteractivityState state = new InteractivityState(initData, replyTo == MAIN_SESSION ? null : replyTo);
+            int listenerIndex = internListener(listenerId);
+            InteractivityListener listener = indexedListeners[listenerIndex];
 
-        listener.activated(chatId, state);
+            listener.activated(chatId, state);
 
-        //Check if the listener didn't accept the job.
-        if (state.finished) return;
+            //Check if the listener didn't accept the job.
+            if (state.finished) return;
 
-        //Record the listener as activated.
-        setActiveListenerId(chatId, listenerId);
-        setMessageId(chatId, state.botMessageId);
-        setStateData(chatId, state.data);
+            //Record the listener as activated (the filter is updated first, so the session is never hidden by it).
+            ConcurrentLongSet activeChats = this.activeChats;
+            if (activeChats != null && replyTo == MAIN_SESSION) activeChats.add(chatId);
+            storeSession(chatId, replyTo, new InteractivitySession(listenerId, listenerIndex, state.botMessageId, state.data));
+            InteractivityMetrics.started(listenerId);
+        }
     }
 
     /**
@@ -47,34 +202,259 @@ public abstract class InteractivityHandler implements Handler<Update> {
      * @return {@code true} If a listener was deactivate, {@code false} if there was no listener activated for the chat.
      */
     public boolean deactivateListener(long chatId) {
-        String listenerId = getActiveListenerId(chatId);
-        if (listenerId == null) return false;
+        if (isInactiveChat(chatId)) return false;
+        return deactivate(chatId, MAIN_SESSION);
+    }
+
+    /**
+     * Deactivates the listener of the replies to a bot message.
+     *
+     * @param chatId       The chat id.
+     * @param botMessageId The id of the bot message which the listener processes the replies to.
+     * @return {@code true} If a listener was deactivate, {@code false} if there was no listener activated for the message.
+     */
+    public boolean deactivateReplyListener(long chatId, int botMessageId) {
+        return deactivate(chatId, botMessageId);
+    }
+
+    /**
+     * Deactivates the active listener of a session.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @return {@code true} If a listener was deactivate, {@code false} if there was no active listener.
+     */
+    protected boolean deactivate(long chatId, int replyTo) {
+        synchronized (lockFor(chatId)) {
+            InteractivitySession session = loadSession(chatId, replyTo);
+            if (session == null) return false;
+
+            InteractivityListener listener = listenerOf(session);
+            if (listener != null) {
+                InteractivityState state = new InteractivityState(session.data, session.messageId);
+                listener.deactivated(chatId, state);
+            }
+
+            //Wipe the data of the listener.
+            removeSession(chatId, replyTo);
+            InteractivityMetrics.ended(session.listenerId, InteractivityMetrics.DEACTIVATED);
+
+            return true;
+        }
+    }
+
+    /**
+     * Gets the lock which serializes the transitions of a chat.
+     *
+     * @param chatId The chat id.
+     * @return The lock of the chat, shared with other chats.
+     */
+    protected Object lockFor(long chatId) {
+        return locks[stripe(chatId)];
+    }
+
+    private static int stripe(long chatId) {
+        return (int) ((chatId ^ (chatId >>> 32)) * 0x9E3779B9L >>> 26) & (LOCK_STRIPES - 1);
+    }
+
+    /**
+     * Moves the active listener of a chat into a new chat id, when a group is migrated to a supergroup.
+     * <p>
+     * Only the main session is moved, the sessions bound to the old group's messages are left to expire.
+     *
+     * @param fromChatId The old chat id.
+     * @param toChatId   The new chat id.
+     * @return {@code true} if a listener was moved, {@code false} if the old chat had no active listener.
+     */
+    public boolean migrateChat(long fromChatId, long toChatId) {
+        if (isInactiveChat(fromChatId)) return false;
+
+        //Locked in the stripes order, so concurrent migrations can't deadlock.
+        boolean ordered = stripe(fromChatId) <= stripe(toChatId);
+        synchronized (lockFor(ordered ? fromChatId : toChatId)) {
+            synchronized (lockFor(ordered ? toChatId : fromChatId)) {
+                InteractivitySession session = loadSession(fromChatId, MAIN_SESSION);
+                if (session == null) return false;
+
+                ConcurrentLongSet activeChats = this.activeChats;
+                if (activeChats != null) activeChats.add(toChatId);
+                storeSession(toChatId, MAIN_SESSION, new InteractivitySession(session.listenerId, session.listenerIndex,
+                        session.messageId, session.data));
+                removeSession(fromChatId, MAIN_SESSION);
+
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gets the session timeout of a listener.
+     *
+     * @param listenerId The listener id.
+     * @return The session timeout in seconds, {@code 0} if the sessions never expire or the listener is unknown.
+     */
+    protected long sessionTimeout(String listenerId) {
+        Integer index = listenerIndices.get(listenerId);
+        return index == null ? 0 : sessionTimeout(index);
+    }
 
-        InteractivityListener listener = listeners.get(listenerId);
-        if (listener != null) {
-            InteractivityState state = new InteractivityState(getStateData(chatId), getMessageId(chatId));
-            listener.deactivated(chatId, state);
+    /**
+     * Notifies the listener of an expired session, called by the handler after the session was removed from storage.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @param session The session which expired.
+     */
+    protected void sessionExpired(long chatId, int replyTo, InteractivitySession session) {
+        sessionEnded(chatId, replyTo, session, InteractivityMetrics.EXPIRED);
+    }
+
+    /**
+     * Notifies the listener of a session ended by the handler, called after the session was removed from storage.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @param session The session which ended.
+     * @param reason  The reason the session ended for, as labeled in the metrics.
+     */
+    protected void sessionEnded(long chatId, int replyTo, InteractivitySession session, String reason) {
+        InteractivityMetrics.ended(session.listenerId, reason);
+
+        synchronized (lockFor(chatId)) {
+            //A new session may have been activated since the ended one was removed, which has to stay visible.
+            ConcurrentLongSet activeChats = this.activeChats;
+            if (activeChats != null && replyTo == MAIN_SESSION && loadSession(chatId, MAIN_SESSION) == null)
+                activeChats.remove(chatId);
+
+            InteractivityListener listener = listenerOf(session);
+            if (listener != null) listener.deactivated(chatId, new InteractivityState(session.data, session.messageId));
         }
+    }
 
-        //Wipe the data of the listener.
-        setActiveListenerId(chatId, null);
-        setMessageId(chatId, null);
-        setStateData(chatId, null);
+    /**
+     * Checks if a chat is known to have no active main listener, without loading its' session.
+     *
+     * @param chatId The chat id.
+     * @return {@code true} if the chat has no active main listener, {@code false} if it may have one.
+     */
+    protected boolean isInactiveChat(long chatId) {
+        ConcurrentLongSet activeChats = this.activeChats;
+        return activeChats != null && !activeChats.contains(chatId);
+    }
+
+    /**
+     * Deletes an interactivity session, and removes the chat from the active chats filter if it's the main session.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     */
+    protected void removeSession(long chatId, int replyTo) {
+        deleteSession(chatId, replyTo);
+        ConcurrentLongSet activeChats = this.activeChats;
+        if (activeChats != null && replyTo == MAIN_SESSION) activeChats.remove(chatId);
+    }
 
+    /**
+     * Deletes an interactivity session unless it was modified since it was loaded,
+     * and removes the chat from the active chats filter if it's the main session.
+     *
+     * @param chatId   The chat id.
+     * @param replyTo  The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @param expected The session as it was loaded.
+     * @return {@code false} if the session was modified meanwhile and was kept.
+     */
+    protected boolean removeSession(long chatId, int replyTo, InteractivitySession expected) {
+        if (!deleteSession(chatId, replyTo, expected)) return false;
+        ConcurrentLongSet activeChats = this.activeChats;
+        if (activeChats != null && replyTo == MAIN_SESSION) activeChats.remove(chatId);
         return true;
     }
 
-    protected abstract void setActiveListenerId(long chatId, String listenerId);
+    /**
+     * Loads an interactivity session of a chat.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @return The session, {@code null} if there's no active listener for it.
+     */
+    protected abstract InteractivitySession loadSession(long chatId, int replyTo);
 
-    protected abstract String getActiveListenerId(long chatId);
+    /**
+     * Stores an interactivity session of a chat, replacing the previous one, and sets its' timeout.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @param session The session to store.
+     */
+    protected abstract void storeSession(long chatId, int replyTo, InteractivitySession session);
 
-    protected abstract void setMessageId(long chatId, Integer messageId);
+    /**
+     * Deletes an interactivity session of a chat.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     */
+    protected abstract void deleteSession(long chatId, int replyTo);
 
-    protected abstract Integer getMessageId(long chatId);
+    /**
+     * Deletes an interactivity session of a chat unless it was modified since it was loaded.
+     * <p>
+     * The default implementation deletes it unconditionally, which is enough for the backends
+     * which are not shared between instances (as the handler's locks serialize the chat transitions).
+     *
+     * @param chatId   The chat id.
+     * @param replyTo  The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @param expected The session as it was loaded.
+     * @return {@code false} if the session was modified meanwhile and was kept.
+     */
+    protected boolean deleteSession(long chatId, int replyTo, InteractivitySession expected) {
+        deleteSession(chatId, replyTo);
+        return true;
+    }
 
-    protected abstract void setStateData(long chatId, Map<String, String> data);
+    /**
+     * Writes the changes of an interactivity state back into its' session, and refreshes its' timeout.
+     * <p>
+     * The default implementation stores the whole session if the state was modified or the session can expire,
+     * handlers which can write individual fields should override it to write only the modified ones.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @param session The session the state was constructed from.
+     * @param state   The state after being processed by the listener.
+     */
+    protected void updateSession(long chatId, int replyTo, InteractivitySession session, InteractivityState state) {
+        InteractivityListener listener = listenerOf(session);
+        if (state.isModified() || (listener != null && listener.sessionTimeout() > 0))
+            storeSession(chatId, replyTo, new InteractivitySession(session.listenerId, session.listenerIndex,
+                    state.botMessageId, state.data));
+    }
 
-    protected abstract Map<String, String> getStateData(long chatId);
+    /**
+     * Counts the active sessions in the handler's storage, as reported by the active sessions gauge.
+     * <p>
+     * The default implementation doesn't count them.
+     *
+     * @return The number of active sessions, including the sessions bound to bot messages, {@code -1} if unknown.
+     */
+    public long countSessions() {
+        return -1;
+    }
+
+    /**
+     * Flushes any writes buffered by the handler, called after each batch of updates.
+     * <p>
+     * The default implementation does nothing, as the writes are done immediately.
+     */
+    public void flush() {
+    }
+
+    /**
+     * Flushes and releases the resources of the handler, the default implementation does nothing.
+     */
+    @Override
+    public void close() {
+    }
 
     @Override
     public boolean process(Update event) {
@@ -84,42 +464,67 @@ public abstract class InteractivityHandler implements Handler<Update> {
         Message message = event.getMessage();
         long chatId = message.getChatId();
 
-        //Get the active listener id.
-        String listenerId = getActiveListenerId(chatId);
+        //The replies to the bot messages may have a bound session, which is not tracked by the active chats filter.
+        Message reply = message.getReplyToMessage();
+        int replyTo = reply != null && reply.getFrom() != null && Boolean.TRUE.equals(reply.getFrom().getBot())
+                ? reply.getMessageId() : MAIN_SESSION;
 
-        //No active listener for this chat.
-        if (listenerId == null) return false;
+        //Skip the chats which can't have an active listener.
+        if (replyTo == MAIN_SESSION && isInactiveChat(chatId)) return false;
 
-        //Get the listener.
-        InteractivityListener listener = listeners.get(listenerId);
+        synchronized (lockFor(chatId)) {
+            if (replyTo != MAIN_SESSION) {
+                //Dispatch to the session bound to the replied message if there's one.
+                InteractivitySession session = loadSession(chatId, replyTo);
+                if (session != null) return dispatch(chatId, replyTo, session, message);
+                if (isInactiveChat(chatId)) return false;
+            }
 
-        //Unknown listener, ignore the message.
-        if (listener == null) return false;
+            //Get the main interactivity session of the chat.
+            InteractivitySession session = loadSession(chatId, MAIN_SESSION);
+
+            //No active listener for this chat.
+            if (session == null) return false;
 
-        //Filter by message id if set.
-        Integer messageId = getMessageId(chatId);
-        if (messageId != null && (!message.isReply() || !message.getReplyToMessage().getMessageId().equals(messageId)))
-            return false;
+            //Filter by message id if set.
+            Integer messageId = session.messageId;
+            if (messageId != null && (!message.isReply() || !message.getReplyToMessage().getMessageId().equals(messageId)))
+                return false;
 
-        //Get the state data of the handler.
-        Map<String, String> data = getStateData(chatId);
+            return dispatch(chatId, MAIN_SESSION, session, message);
+        }
+    }
+
+    /**
+     * Dispatches a message to the listener of a session, while holding the chat's lock.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @param session The session to dispatch the message to.
+     * @param message The message to process.
+     * @return {@code true} if the message was consumed by the listener.
+     */
+    protected boolean dispatch(long chatId, int replyTo, InteractivitySession session, Message message) {
+        //Get the listener (by its' interned index when the storage resolved it).
+        InteractivityListener listener = listenerOf(session);
+
+        //Unknown listener, ignore the message.
+        if (listener == null) return false;
 
         //Construct the interactivity state.
-        InteractivityState state = new InteractivityState(data, messageId);
+        InteractivityState state = new InteractivityState(session.data, session.messageId);
 
         //Trigger the listener.
         boolean consumed = listener.process(chatId, message, state);
 
         //Check if the listener decided to quit work.
         if (state.finished) {
-            //If so, wipe his data.
-            setActiveListenerId(chatId, null);
-            setMessageId(chatId, null);
-            setStateData(chatId, null);
+            //If so, wipe his data (unless it was modified concurrently by another instance).
+            if (removeSession(chatId, replyTo, session))
+                InteractivityMetrics.ended(session.listenerId, InteractivityMetrics.FINISHED);
         } else {
-            //Otherwise update his data.
-            setMessageId(chatId, state.botMessageId);
-            setStateData(chatId, state.data);
+            //Otherwise write back what he changed.
+            updateSession(chatId, replyTo, session, state);
         }
 
         //Report if the message was consumed or not.
@@ -29,4 +29,15 @@ public interface InteractivityListener {
      * @param state  The listener state (Modifiable) (finished field is ignored here).
      */
     void deactivated(long chatId, InteractivityState state);
+
+    /**
+     * Returns the time a session of the listener can stay idle for before it expires and is deactivated.
+     * <p>
+     * The timeout is refreshed with each message the listener processes.
+     *
+     * @return The session timeout in seconds, {@code 0} for sessions which never expire.
+     */
+    default long sessionTimeout() {
+        return 0;
+    }
 }
@@ -0,0 +1,109 @@
+package com.github.rami_sabbagh.telegram.alice_framework.interactivity;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+/**
+ * The Prometheus metrics of the interactivity sessions, registered in the default registry.
+ */
+public final class InteractivityMetrics {
+
+    /**
+     * The interactivity sessions started by this instance, labeled by {@code listener}.
+     */
+    public static final Counter sessionsStarted = Counter.build()
+            .name("alice_interactivity_sessions_started_total")
+            .help("Interactivity sessions started.")
+            .labelNames("listener")
+            .register();
+
+    /**
+     * The interactivity sessions ended by this instance, labeled by {@code listener} and {@code reason}.
+     */
+    public static final Counter sessionsEnded = Counter.build()
+            .name("alice_interactivity_sessions_ended_total")
+            .help("Interactivity sessions ended.")
+            .labelNames("listener", "reason")
+            .register();
+
+    /**
+     * The active interactivity sessions, as counted by the storage of the reported handler.
+     * <p>
+     * It's counted when scraped, and the redis handlers count all the sessions of the bot,
+     * so every instance reports the same count.
+     */
+    public static final Gauge activeSessions = Gauge.build()
+            .name("alice_interactivity_sessions_active")
+            .help("Active interactivity sessions (of all the bot instances).")
+            .register();
+
+    /**
+     * The session writes rejected for being based on a stale session, labeled by {@code operation}.
+     */
+    public static final Counter conflicts = Counter.build()
+            .name("alice_interactivity_conflicts_total")
+            .help("Interactivity session writes rejected for concurrent modifications.")
+            .labelNames("operation")
+            .register();
+
+    /**
+     * The session was finished by its' listener.
+     */
+    public static final String FINISHED = "finished";
+
+    /**
+     * The session was deactivated by the bot, ex: by the cancel command or by activating another listener.
+     */
+    public static final String DEACTIVATED = "deactivated";
+
+    /**
+     * The session timed out without receiving any message.
+     */
+    public static final String EXPIRED = "expired";
+
+    /**
+     * The session was evicted to free up space for newer sessions.
+     */
+    public static final String EVICTED = "evicted";
+
+    /**
+     * Records the start of a session.
+     *
+     * @param listenerId The id of the session listener.
+     */
+    static void started(String listenerId) {
+        sessionsStarted.labels(listenerId).inc();
+    }
+
+    /**
+     * Records the end of a session.
+     *
+     * @param listenerId The id of the session listener.
+     * @param reason     The reason the session ended for.
+     */
+    static void ended(String listenerId, String reason) {
+        sessionsEnded.labels(listenerId, reason).inc();
+    }
+
+    /**
+     * Reports the sessions count of a handler in the active sessions gauge, replacing the previously reported one.
+     *
+     * @param handler The interactivity handler to count the sessions of.
+     */
+    public static void reportActiveSessions(InteractivityHandler handler) {
+        activeSessions.setChild(new Gauge.Child() {
+            @Override
+            public double get() {
+                try {
+                    long count = handler.countSessions();
+                    return count < 0 ? Double.NaN : count;
+                } catch (RuntimeException e) {
+                    return Double.NaN; //Not reachable, ex: redis is down.
+                }
+            }
+        });
+    }
+
+    private InteractivityMetrics() {
+    }
+}
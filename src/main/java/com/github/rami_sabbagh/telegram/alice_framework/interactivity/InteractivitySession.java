@@ -0,0 +1,91 @@
+package com.github.rami_sabbagh.telegram.alice_framework.interactivity;
+
+import java.util.Map;
+
+/**
+ * The stored interactivity session of a chat, which is the active listener and its' state.
+ */
+public class InteractivitySession {
+    /**
+     * The id of the active listener.
+     */
+    public final String listenerId;
+
+    /**
+     * The index the listener id is interned into by the handler which created the session, for dispatching without
+     * looking up the id, {@code -1} when not resolved (ex: decoded from a shared storage).
+     * <p>
+     * It's local to the process, so only the listener id is stored.
+     */
+    public final int listenerIndex;
+
+    /**
+     * The id of the bot message which the listener accepts replies to only, can be {@code null}.
+     */
+    public final Integer messageId;
+
+    /**
+     * The state data of the listener.
+     */
+    public final Map<String, String> data;
+
+    /**
+     * The version of the stored session, which changes with each write, {@code 0} when not tracked by the backend.
+     * <p>
+     * Used for rejecting the writes based on a stale session, when the backend is shared between instances.
+     */
+    public final long version;
+
+    /**
+     * Constructs a new instance without a version.
+     *
+     * @param listenerId The id of the active listener.
+     * @param messageId  The id of the bot message which the listener accepts replies to only, can be {@code null}.
+     * @param data       The state data of the listener.
+     */
+    public InteractivitySession(String listenerId, Integer messageId, Map<String, String> data) {
+        this(listenerId, -1, messageId, data, 0);
+    }
+
+    /**
+     * Constructs a new instance without a version, with the listener's interned index.
+     *
+     * @param listenerId    The id of the active listener.
+     * @param listenerIndex The index the listener id is interned into, {@code -1} when not resolved.
+     * @param messageId     The id of the bot message which the listener accepts replies to only, can be {@code null}.
+     * @param data          The state data of the listener.
+     */
+    public InteractivitySession(String listenerId, int listenerIndex, Integer messageId, Map<String, String> data) {
+        this(listenerId, listenerIndex, messageId, data, 0);
+    }
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param listenerId The id of the active listener.
+     * @param messageId  The id of the bot message which the listener accepts replies to only, can be {@code null}.
+     * @param data       The state data of the listener.
+     * @param version    The version of the stored session, {@code 0} when not tracked by the backend.
+     */
+    public InteractivitySession(String listenerId, Integer messageId, Map<String, String> data, long version) {
+        this(listenerId, -1, messageId, data, version);
+    }
+
+    /**
+     * Constructs a new instance, with the listener's interned index.
+     *
+     * @param listenerId    The id of the active listener.
+     * @param listenerIndex The index the listener id is interned into, {@code -1} when not resolved.
+     * @param messageId     The id of the bot message which the listener accepts replies to only, can be {@code null}.
+     * @param data          The state data of the listener.
+     * @param version       The version of the stored session, {@code 0} when not tracked by the backend.
+     */
+    public InteractivitySession(String listenerId, int listenerIndex, Integer messageId, Map<String, String> data,
+                                long version) {
+        this.listenerId = listenerId;
+        this.listenerIndex = listenerIndex;
+        this.messageId = messageId;
+        this.data = data;
+        this.version = version;
+    }
+}
@@ -1,22 +1,111 @@
 package com.github.rami_sabbagh.telegram.alice_framework.interactivity;
 
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.ChatUtilities;
 import org.telegram.telegrambots.meta.api.objects.Message;
 
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public class InteractivityState {
+    /**
+     * The data key which the typed state is stored under.
+     */
+    public static final String STATE_KEY = "$state";
+
     public final Map<String, String> data;
     public Integer botMessageId;
     public boolean finished;
 
+    /**
+     * The bot message id the state was constructed with, for detecting its' modification.
+     */
+    private final Integer initialBotMessageId;
+
     public InteractivityState(Map<String, String> data, Integer botMessageId) {
-        this.data = data;
+        this.data = new TrackedMap(data == null ? new HashMap<>() : data);
         this.botMessageId = botMessageId;
+        this.initialBotMessageId = botMessageId;
     }
 
     public boolean setFilterInGroups(Message message) {
-        if (!message.isUserMessage())
+        if (ChatUtilities.getChatType(message) != ChatUtilities.ChatType.USER)
             botMessageId = message.getMessageId();
         return true;
     }
+
+    /**
+     * Gets the typed state of the listener, stored as a single data value.
+     * <p>
+     * The state is decoded on each call, so it has to be set back after being modified.
+     *
+     * @param codec The codec of the state.
+     * @param <T>   The type of the state.
+     * @return The decoded state, {@code null} if it was not set.
+     */
+    public <T> T getState(StateCodec<T> codec) {
+        String encoded = data.get(STATE_KEY);
+        if (encoded == null) return null;
+
+        StateReader reader = new StateReader(Base64.getDecoder().decode(encoded));
+        return codec.decode(reader, reader.readVarInt());
+    }
+
+    /**
+     * Sets the typed state of the listener, which is encoded into a single data value.
+     * <p>
+     * Base64 is used, as the storage backends store the data as strings.
+     *
+     * @param codec The codec of the state.
+     * @param state The state to set, {@code null} to remove it.
+     * @param <T>   The type of the state.
+     */
+    public <T> void setState(StateCodec<T> codec, T state) {
+        if (state == null) {
+            data.remove(STATE_KEY);
+            return;
+        }
+
+        StateWriter writer = new StateWriter().writeVarInt(codec.version());
+        codec.encode(state, writer);
+        data.put(STATE_KEY, Base64.getEncoder().withoutPadding().encodeToString(writer.toByteArray()));
+    }
+
+    /**
+     * Checks if the bot message id was changed since the state was constructed.
+     *
+     * @return {@code true} if the bot message id was changed.
+     */
+    public boolean isBotMessageIdModified() {
+        return !Objects.equals(botMessageId, initialBotMessageId);
+    }
+
+    /**
+     * Gets the data keys which were set since the state was constructed.
+     *
+     * @return The modified data keys (read-only).
+     */
+    public Set<String> getModifiedKeys() {
+        return ((TrackedMap) data).getModified();
+    }
+
+    /**
+     * Gets the data keys which were removed since the state was constructed.
+     *
+     * @return The removed data keys (read-only).
+     */
+    public Set<String> getRemovedKeys() {
+        return ((TrackedMap) data).getRemoved();
+    }
+
+    /**
+     * Checks if the state was modified since it was constructed.
+     *
+     * @return {@code true} if the data or the bot message id were modified.
+     */
+    public boolean isModified() {
+        return isBotMessageIdModified() || ((TrackedMap) data).isModified();
+    }
 }
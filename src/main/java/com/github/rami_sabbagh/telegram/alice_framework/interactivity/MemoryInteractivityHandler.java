@@ -0,0 +1,612 @@
+package com.github.rami_sabbagh.telegram.alice_framework.interactivity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * An InteractivityHandler which keeps the sessions in the process memory, for single instance bots and tests.
+ * <p>
+ * The sessions are split into segments, each is an open addressing hash table keyed by the primitive chat id
+ * and bot message id,
+ * with its' own lock, and a recency list of its' sessions. When a segment exceeds its' share of the maximum sessions,
+ * its' least recently used sessions are evicted, and the sessions idle for longer than the idle timeout
+ * (or their listener's session timeout) are expired by a periodic sweep.
+ * <p>
+ * The sessions can be snapshotted periodically into a local file, which is loaded back when the handler is created,
+ * so they survive a restart of the bot.
+ * <p>
+ * The listeners of the evicted and expired sessions are notified on the handler's maintenance thread.
+ */
+public class MemoryInteractivityHandler extends InteractivityHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryInteractivityHandler.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x414C4953; //"ALIS"
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private static final int SEGMENTS_BITS = 4;
+
+    private final Segment[] segments = new Segment[1 << SEGMENTS_BITS];
+
+    /**
+     * The maximum number of sessions per segment.
+     */
+    protected final int segmentCapacity;
+
+    /**
+     * The time a session can be idle for before it expires in milliseconds, {@code 0} for no limit.
+     */
+    protected final long idleTimeout;
+
+    /**
+     * The file the sessions are snapshotted into, {@code null} when disabled.
+     */
+    protected final Path snapshotFile;
+
+    /**
+     * Sweeps the expired sessions, writes the snapshots and notifies the listeners of the ended sessions.
+     */
+    protected final ScheduledExecutorService maintainer;
+
+    /**
+     * Creates a new InteractivityHandler which keeps up to 100,000 sessions in memory, without an idle timeout.
+     */
+    public MemoryInteractivityHandler() {
+        this(100_000, 0);
+    }
+
+    /**
+     * Creates a new InteractivityHandler which keeps the sessions in memory, without snapshotting them.
+     *
+     * @param maxSessions The maximum number of sessions to keep, the least recently used are evicted beyond it.
+     * @param idleTimeout The time a session can be idle for before it expires in seconds, {@code 0} for no limit.
+     */
+    public MemoryInteractivityHandler(int maxSessions, long idleTimeout) {
+        this(maxSessions, idleTimeout, null, 0);
+    }
+
+    /**
+     * Creates a new InteractivityHandler which keeps the sessions in memory.
+     *
+     * @param maxSessions      The maximum number of sessions to keep, the least recently used are evicted beyond it.
+     * @param idleTimeout      The time a session can be idle for before it expires in seconds, {@code 0} for no limit.
+     * @param snapshotFile     The file to snapshot the sessions into and load them from, {@code null} to disable.
+     * @param snapshotInterval The interval between the snapshots in seconds, {@code 0} to snapshot only on close.
+     */
+    public MemoryInteractivityHandler(int maxSessions, long idleTimeout, Path snapshotFile, long snapshotInterval) {
+        if (maxSessions <= 0) throw new IllegalArgumentException("The maximum sessions must be positive!");
+
+        for (int i = 0; i < segments.length; i++) segments[i] = new Segment();
+        this.segmentCapacity = Math.max(1, (maxSessions + segments.length - 1) / segments.length);
+        this.idleTimeout = TimeUnit.SECONDS.toMillis(idleTimeout);
+        this.snapshotFile = snapshotFile;
+
+        if (snapshotFile != null && Files.exists(snapshotFile)) loadSnapshot();
+
+        maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "alice-interactivity-maintainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintainer.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.SECONDS);
+        if (snapshotFile != null && snapshotInterval > 0)
+            maintainer.scheduleWithFixedDelay(this::writeSnapshot, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static long hash(long chatId, int replyTo) {
+        return mix(chatId * 0x9E3779B97F4A7C15L + replyTo);
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENTS_BITS))];
+    }
+
+    /**
+     * Counts the sessions kept in memory.
+     *
+     * @return The number of sessions.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public long countSessions() {
+        return size();
+    }
+
+    /**
+     * Notifies the listeners of some ended sessions on the maintenance thread.
+     *
+     * @param records The records of the ended sessions.
+     * @param reason  The reason the sessions ended for.
+     */
+    protected void deliver(List<Record> records, String reason) {
+        if (records.isEmpty()) return;
+
+        try {
+            maintainer.execute(() -> {
+                for (Record record : records) {
+                    try {
+                        sessionEnded(record.chatId, record.replyTo, record.toSession(), reason);
+                    } catch (RuntimeException e) {
+                        logger.error("Failed to end the interactivity session of chat ({})", record.chatId, e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Dropped {} ended interactivity sessions, as the handler is closed", records.size());
+        }
+    }
+
+    /**
+     * Computes the expiry time of a listener's session.
+     *
+     * @param listenerIndex The interned index of the listener id.
+     * @param now           The current time in milliseconds.
+     * @return The expiry time in milliseconds, {@code 0} if the session doesn't expire.
+     */
+    protected long expiryTime(int listenerIndex, long now) {
+        long timeout = sessionTimeout(listenerIndex);
+        return timeout > 0 ? now + TimeUnit.SECONDS.toMillis(timeout) : 0;
+    }
+
+    @Override
+    protected InteractivitySession loadSession(long chatId, int replyTo) {
+        long hash = hash(chatId, replyTo);
+        Segment segment = segmentFor(hash);
+        long now = System.currentTimeMillis();
+
+        Record record;
+        synchronized (segment) {
+            record = segment.get(chatId, replyTo, hash);
+            if (record == null) return null;
+
+            if (!record.isExpired(now, idleTimeout)) {
+                segment.touch(record, now);
+                return record.toSession();
+            }
+
+            //Expired but not swept yet.
+            segment.remove(chatId, replyTo, hash);
+        }
+
+        deliver(List.of(record), InteractivityMetrics.EXPIRED);
+        return null;
+    }
+
+    @Override
+    protected void storeSession(long chatId, int replyTo, InteractivitySession session) {
+        long hash = hash(chatId, replyTo);
+        Segment segment = segmentFor(hash);
+        long now = System.currentTimeMillis();
+
+        int listenerIndex = session.listenerIndex >= 0 ? session.listenerIndex : internListener(session.listenerId);
+        Record record = new Record(chatId, replyTo, session.listenerId, listenerIndex, session.messageId, session.data);
+        record.expiresAt = expiryTime(listenerIndex, now);
+
+        List<Record> evicted;
+        synchronized (segment) {
+            evicted = segment.put(record, hash, now, segmentCapacity);
+        }
+
+        deliver(evicted, InteractivityMetrics.EVICTED);
+    }
+
+    @Override
+    protected void updateSession(long chatId, int replyTo, InteractivitySession session, InteractivityState state) {
+        if (state.isModified()) {
+            storeSession(chatId, replyTo, new InteractivitySession(session.listenerId, session.listenerIndex,
+                    state.botMessageId, state.data));
+            return;
+        }
+
+        //Only refresh the session timeout.
+        long hash = hash(chatId, replyTo);
+        Segment segment = segmentFor(hash);
+        long now = System.currentTimeMillis();
+
+        synchronized (segment) {
+            Record record = segment.get(chatId, replyTo, hash);
+            if (record == null) return;
+            record.expiresAt = expiryTime(record.listenerIndex, now);
+            segment.touch(record, now);
+        }
+    }
+
+    @Override
+    protected void deleteSession(long chatId, int replyTo) {
+        long hash = hash(chatId, replyTo);
+        Segment segment = segmentFor(hash);
+
+        synchronized (segment) {
+            segment.remove(chatId, replyTo, hash);
+        }
+    }
+
+    /**
+     * Removes the expired sessions, and notifies their listeners.
+     */
+    protected void sweep() {
+        long now = System.currentTimeMillis();
+        List<Record> expired = new ArrayList<>();
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Record record = segment.head.after; record != segment.head; ) {
+                    Record next = record.after;
+                    if (record.isExpired(now, idleTimeout)) {
+                        segment.remove(record);
+                        expired.add(record);
+                    }
+                    record = next;
+                }
+            }
+        }
+
+        deliver(expired, InteractivityMetrics.EXPIRED);
+    }
+
+    /**
+     * Writes a snapshot of the sessions into the snapshot file, replacing the previous one atomically.
+     */
+    public void writeSnapshot() {
+        if (snapshotFile == null) return;
+
+        Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        int count = 0;
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeInt(SNAPSHOT_VERSION);
+
+            for (Segment segment : segments) {
+                //Serialize each segment in memory, so the file isn't written while holding the lock.
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                DataOutputStream segmentOutput = new DataOutputStream(buffer);
+
+                synchronized (segment) {
+                    for (Record record = segment.head.after; record != segment.head; record = record.after) {
+                        segmentOutput.writeBoolean(true);
+                        record.write(segmentOutput);
+                        count++;
+                    }
+                }
+
+                buffer.writeTo(output);
+            }
+
+            output.writeBoolean(false);
+        } catch (IOException e) {
+            logger.error("Failed to write the interactivity sessions snapshot", e);
+            return;
+        }
+
+        try {
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Wrote a snapshot of {} interactivity sessions", count);
+        } catch (IOException e) {
+            logger.error("Failed to replace the interactivity sessions snapshot", e);
+        }
+    }
+
+    /**
+     * Loads the sessions from the snapshot file.
+     */
+    protected void loadSnapshot() {
+        long start = System.currentTimeMillis();
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (input.readInt() != SNAPSHOT_MAGIC || input.readInt() != SNAPSHOT_VERSION) {
+                logger.warn("Ignored the interactivity sessions snapshot {}, as it has an unknown format", snapshotFile);
+                return;
+            }
+
+            while (input.readBoolean()) {
+                Record record = Record.read(input, this::internListener);
+                long hash = record.hash();
+                Segment segment = segmentFor(hash);
+                synchronized (segment) {
+                    //Keep the snapshotted access time, so the recency order and the idle timeout are preserved.
+                    segment.put(record, hash, record.lastAccess, segmentCapacity);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to load the interactivity sessions snapshot", e);
+        }
+
+        int count = size();
+        logger.info("Loaded {} interactivity sessions from the snapshot in {} ms", count, System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void close() {
+        maintainer.shutdown();
+        try {
+            if (!maintainer.awaitTermination(10, TimeUnit.SECONDS))
+                logger.warn("The interactivity maintenance thread didn't terminate in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeSnapshot();
+    }
+
+    /**
+     * The compact record of a session.
+     */
+    protected static final class Record {
+        final long chatId;
+
+        /**
+         * The bot message id the session is bound to, {@code 0} for the chat's main session.
+         */
+        final int replyTo;
+
+        /**
+         * The listener id, only kept for the snapshots and the ended sessions' metrics.
+         */
+        final String listenerId;
+
+        /**
+         * The index the listener id is interned into by the handler, which the sessions are dispatched by.
+         */
+        final int listenerIndex;
+
+        /**
+         * The bot message id, {@code 0} when not set (Telegram messages ids are positive).
+         */
+        final int messageId;
+
+        /**
+         * The state data, as a flat array of keys and values.
+         */
+        final String[] data;
+
+        /**
+         * The last time the session was accessed in milliseconds, guarded by the segment.
+         */
+        long lastAccess;
+
+        /**
+         * The time the session expires at in milliseconds, {@code 0} if it doesn't, guarded by the segment.
+         */
+        long expiresAt;
+
+        /**
+         * The neighbours of the record in the segment's recency list, guarded by the segment.
+         */
+        Record before, after;
+
+        Record(long chatId, int replyTo, String listenerId, int listenerIndex, Integer messageId, Map<String, String> data) {
+            this.chatId = chatId;
+            this.replyTo = replyTo;
+            this.listenerId = listenerId;
+            this.listenerIndex = listenerIndex;
+            this.messageId = messageId == null ? 0 : messageId;
+
+            this.data = new String[data == null ? 0 : data.size() * 2];
+            if (data == null) return;
+            int i = 0;
+            for (Map.Entry<String, String> entry : data.entrySet()) {
+                this.data[i++] = entry.getKey().intern(); //The keys are shared by the sessions of a listener.
+                this.data[i++] = entry.getValue();
+            }
+        }
+
+        private Record(long chatId, int replyTo, String listenerId, int listenerIndex, int messageId, String[] data) {
+            this.chatId = chatId;
+            this.replyTo = replyTo;
+            this.listenerId = listenerId;
+            this.listenerIndex = listenerIndex;
+            this.messageId = messageId;
+            this.data = data;
+        }
+
+        long hash() {
+            return MemoryInteractivityHandler.hash(chatId, replyTo);
+        }
+
+        boolean is(long chatId, int replyTo) {
+            return this.chatId == chatId && this.replyTo == replyTo;
+        }
+
+        boolean isExpired(long now, long idleTimeout) {
+            return (expiresAt != 0 && expiresAt <= now) || (idleTimeout != 0 && lastAccess + idleTimeout <= now);
+        }
+
+        InteractivitySession toSession() {
+            Map<String, String> map = new HashMap<>();
+            for (int i = 0; i < data.length; i += 2) map.put(data[i], data[i + 1]);
+            return new InteractivitySession(listenerId, listenerIndex, messageId == 0 ? null : messageId, map);
+        }
+
+        void write(DataOutputStream output) throws IOException {
+            output.writeLong(chatId);
+            output.writeInt(replyTo);
+            writeString(output, listenerId);
+            output.writeInt(messageId);
+            output.writeLong(lastAccess);
+            output.writeLong(expiresAt);
+            output.writeInt(data.length);
+            for (String string : data) writeString(output, string);
+        }
+
+        static Record read(DataInputStream input, ToIntFunction<String> interner) throws IOException {
+            long chatId = input.readLong();
+            int replyTo = input.readInt();
+            String listenerId = readString(input).intern();
+            int messageId = input.readInt();
+            long lastAccess = input.readLong();
+            long expiresAt = input.readLong();
+
+            String[] data = new String[input.readInt()];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = readString(input);
+                if (i % 2 == 0) data[i] = data[i].intern();
+            }
+
+            Record record = new Record(chatId, replyTo, listenerId, interner.applyAsInt(listenerId), messageId, data);
+            record.lastAccess = lastAccess;
+            record.expiresAt = expiresAt;
+            return record;
+        }
+
+        //Length prefixed, as writeUTF is limited to 64 KiB strings.
+        private static void writeString(DataOutputStream output, String string) throws IOException {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+
+        private static String readString(DataInputStream input) throws IOException {
+            byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A linear probing hash table of records keyed by their chat id and bot message id, where {@code null} marks the empty slots,
+     * and a circular recency list of the records, from the least recently used to the most, guarded by itself.
+     */
+    private static final class Segment {
+        static final int INITIAL_CAPACITY = 16;
+
+        final Record head = new Record(0, 0, null, -1, 0, new String[0]);
+        Record[] table = new Record[INITIAL_CAPACITY];
+        int size;
+
+        Segment() {
+            head.before = head.after = head;
+        }
+
+        Record get(long chatId, int replyTo, long hash) {
+            int mask = table.length - 1;
+            for (int index = (int) hash & mask; ; index = (index + 1) & mask) {
+                Record slot = table[index];
+                if (slot == null || slot.is(chatId, replyTo)) return slot;
+            }
+        }
+
+        void touch(Record record, long now) {
+            record.lastAccess = now;
+            unlink(record);
+            link(record);
+        }
+
+        /**
+         * Inserts or replaces a record, and evicts the least recently used records beyond the capacity.
+         *
+         * @return The evicted records.
+         */
+        List<Record> put(Record record, long hash, long now, int capacity) {
+            if ((size + 1) * 4 > table.length * 3) resize(table.length * 2);
+
+            int mask = table.length - 1;
+            int index = (int) hash & mask;
+            while (table[index] != null && !table[index].is(record.chatId, record.replyTo)) index = (index + 1) & mask;
+
+            if (table[index] != null) unlink(table[index]);
+            else size++;
+            table[index] = record;
+
+            record.lastAccess = now;
+            link(record);
+
+            List<Record> evicted = List.of();
+            while (size > capacity) {
+                Record eldest = head.after;
+                if (eldest == record) break;
+                if (evicted.isEmpty()) evicted = new ArrayList<>();
+                evicted.add(eldest);
+                remove(eldest);
+            }
+            return evicted;
+        }
+
+        void remove(Record record) {
+            remove(record.chatId, record.replyTo, record.hash());
+        }
+
+        void remove(long chatId, int replyTo, long hash) {
+            int mask = table.length - 1;
+            int gap = (int) hash & mask;
+            while (table[gap] == null || !table[gap].is(chatId, replyTo)) {
+                if (table[gap] == null) return;
+                gap = (gap + 1) & mask;
+            }
+
+            unlink(table[gap]);
+
+            //Shift back the following entries of the probe sequence, so no lookup stops at the gap.
+            for (int next = (gap + 1) & mask; table[next] != null; next = (next + 1) & mask) {
+                int home = (int) table[next].hash() & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    table[gap] = table[next];
+                    gap = next;
+                }
+            }
+
+            table[gap] = null;
+            size--;
+        }
+
+        private void link(Record record) {
+            record.before = head.before;
+            record.after = head;
+            head.before.after = record;
+            head.before = record;
+        }
+
+        private void unlink(Record record) {
+            record.before.after = record.after;
+            record.after.before = record.before;
+            record.before = record.after = null;
+        }
+
+        private void resize(int capacity) {
+            Record[] old = table;
+            Record[] table = new Record[capacity];
+            int mask = capacity - 1;
+
+            for (Record record : old) {
+                if (record == null) continue;
+                int index = (int) record.hash() & mask;
+                while (table[index] != null) index = (index + 1) & mask;
+                table[index] = record;
+            }
+
+            this.table = table;
+        }
+    }
+}
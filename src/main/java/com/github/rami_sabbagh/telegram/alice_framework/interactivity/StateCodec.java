@@ -0,0 +1,36 @@
+package com.github.rami_sabbagh.telegram.alice_framework.interactivity;
+
+/**
+ * Serializes a typed listener state into a compact binary form, stored as a single value of the session.
+ * <p>
+ * The encoded state is prefixed with the codec version, so the codec can still decode the states
+ * stored by its' older versions after changing its' format.
+ *
+ * @param <T> The type of the state.
+ */
+public interface StateCodec<T> {
+
+    /**
+     * Returns the version of the encoded format, to increment when the format changes.
+     *
+     * @return The version of the encoded format.
+     */
+    int version();
+
+    /**
+     * Encodes a state.
+     *
+     * @param state  The state to encode.
+     * @param writer The writer to encode the state into.
+     */
+    void encode(T state, StateWriter writer);
+
+    /**
+     * Decodes a state.
+     *
+     * @param reader  The reader to decode the state from.
+     * @param version The version of the format the state was encoded in.
+     * @return The decoded state.
+     */
+    T decode(StateReader reader, int version);
+}
@@ -0,0 +1,122 @@
+package com.github.rami_sabbagh.telegram.alice_framework.interactivity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the binary form of a state, as written by a {@code StateWriter}.
+ */
+public class StateReader {
+
+    private final byte[] buffer;
+    private int position;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param buffer The binary form of the state.
+     */
+    public StateReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    private void require(int length) {
+        if (length < 0 || position + length > buffer.length)
+            throw new IllegalArgumentException("The state data is truncated!");
+    }
+
+    /**
+     * Checks if there are more bytes to read, ex: fields appended by a newer version of the format.
+     *
+     * @return {@code true} if there are more bytes to read.
+     */
+    public boolean hasRemaining() {
+        return position < buffer.length;
+    }
+
+    /**
+     * Reads a single byte.
+     *
+     * @return The read byte (unsigned).
+     */
+    public int readByte() {
+        require(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Reads a boolean.
+     *
+     * @return The read boolean.
+     */
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    /**
+     * Reads an unsigned variable length integer.
+     *
+     * @return The read integer.
+     */
+    public int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed variable length integer!");
+    }
+
+    /**
+     * Reads an unsigned variable length long.
+     *
+     * @return The read long.
+     */
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed variable length long!");
+    }
+
+    /**
+     * Reads a zigzag encoded signed long.
+     *
+     * @return The read long.
+     */
+    public long readSignedVarLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a length prefixed byte array.
+     *
+     * @return The read bytes.
+     */
+    public byte[] readBytes() {
+        int length = readVarInt();
+        require(length);
+        byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+        position += length;
+        return bytes;
+    }
+
+    /**
+     * Reads a length prefixed UTF-8 string.
+     *
+     * @return The read string, can be {@code null}.
+     */
+    public String readString() {
+        int length = readVarInt() - 1;
+        if (length == -1) return null;
+        require(length);
+        String string = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return string;
+    }
+}
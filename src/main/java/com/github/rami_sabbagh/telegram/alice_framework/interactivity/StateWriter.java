@@ -0,0 +1,122 @@
+package com.github.rami_sabbagh.telegram.alice_framework.interactivity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes the binary form of a state, using variable length integers and length prefixed strings.
+ */
+public class StateWriter {
+
+    private byte[] buffer = new byte[32];
+    private int position;
+
+    private void ensure(int length) {
+        if (position + length > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+    }
+
+    /**
+     * Writes a single byte.
+     *
+     * @param value The byte to write.
+     * @return The writer, for chaining.
+     */
+    public StateWriter writeByte(int value) {
+        ensure(1);
+        buffer[position++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * Writes a boolean as a single byte.
+     *
+     * @param value The boolean to write.
+     * @return The writer, for chaining.
+     */
+    public StateWriter writeBoolean(boolean value) {
+        return writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Writes an unsigned integer in 1 to 5 bytes, 7 bits per byte.
+     *
+     * @param value The integer to write, negative values take 5 bytes.
+     * @return The writer, for chaining.
+     */
+    public StateWriter writeVarInt(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * Writes an unsigned long in 1 to 10 bytes, 7 bits per byte.
+     *
+     * @param value The long to write, negative values take 10 bytes.
+     * @return The writer, for chaining.
+     */
+    public StateWriter writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * Writes a signed long, zigzag encoded so the values of a small magnitude take a few bytes, ex: chat ids.
+     *
+     * @param value The long to write.
+     * @return The writer, for chaining.
+     */
+    public StateWriter writeSignedVarLong(long value) {
+        return writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a length prefixed byte array.
+     *
+     * @param bytes The bytes to write.
+     * @return The writer, for chaining.
+     */
+    public StateWriter writeBytes(byte[] bytes) {
+        writeVarInt(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+        return this;
+    }
+
+    /**
+     * Writes a length prefixed UTF-8 string, which can be {@code null}.
+     *
+     * @param string The string to write.
+     * @return The writer, for chaining.
+     */
+    public StateWriter writeString(String string) {
+        if (string == null) return writeVarInt(0);
+
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length + 1); //0 is reserved for null.
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+        return this;
+    }
+
+    /**
+     * Gets the written bytes.
+     *
+     * @return A copy of the written bytes.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.rami_sabbagh.telegram.alice_framework.interactivity;
+
+import java.util.*;
+
+/**
+ * A map which tracks the keys modified and removed since it was wrapped, so only the changes are written back.
+ */
+class TrackedMap extends AbstractMap<String, String> {
+
+    private final Map<String, String> map;
+    private Set<String> modified;
+    private Set<String> removed;
+
+    TrackedMap(Map<String, String> map) {
+        this.map = map;
+    }
+
+    private void modified(String key) {
+        if (modified == null) modified = new HashSet<>();
+        modified.add(key);
+        if (removed != null) removed.remove(key);
+    }
+
+    private void removed(String key) {
+        if (removed == null) removed = new HashSet<>();
+        removed.add(key);
+        if (modified != null) modified.remove(key);
+    }
+
+    /**
+     * Gets the keys which were set since the map was wrapped.
+     *
+     * @return The modified keys (read-only).
+     */
+    Set<String> getModified() {
+        return modified == null ? Set.of() : Collections.unmodifiableSet(modified);
+    }
+
+    /**
+     * Gets the keys which were removed since the map was wrapped.
+     *
+     * @return The removed keys (read-only).
+     */
+    Set<String> getRemoved() {
+        return removed == null ? Set.of() : Collections.unmodifiableSet(removed);
+    }
+
+    boolean isModified() {
+        return (modified != null && !modified.isEmpty()) || (removed != null && !removed.isEmpty());
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public String get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        String previous = map.put(key, value);
+        if (!Objects.equals(previous, value) || previous == null) modified(key);
+        return previous;
+    }
+
+    @Override
+    public String remove(Object key) {
+        if (!map.containsKey(key)) return null;
+        removed((String) key);
+        return map.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        for (String key : map.keySet()) removed(key);
+        map.clear();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                Iterator<Entry<String, String>> iterator = map.entrySet().iterator();
+                return new Iterator<>() {
+                    private Entry<String, String> current;
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        Entry<String, String> entry = iterator.next();
+                        current = entry;
+                        return new SimpleEntry<>(entry) {
+                            @Override
+                            public String setValue(String value) {
+                                super.setValue(value);
+                                String previous = entry.setValue(value);
+                                if (!Objects.equals(previous, value)) modified(entry.getKey());
+                                return previous;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                        removed(current.getKey());
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,284 @@
+package com.github.rami_sabbagh.telegram.alice_framework.mongodb;
+
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.commands.AdminsListener;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.GraphLookupOptions;
+import com.mongodb.client.model.MergeOptions;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.set;
+import static com.mongodb.client.model.Updates.setOnInsert;
+
+/**
+ * Reads and writes the bot admins, each stored as a document with the user id as its' <i>_id</i>,
+ * and the id of the admin who promoted them as <i>promotedBy</i> ({@code null} for the admins added by hand).
+ * <p>
+ * Each change is a single round trip, and the registered admins listeners are notified once it's written:
+ * <ul>
+ *     <li>A promotion is a conditional insert (an upsert which only sets the fields on insert), so promoting an admin
+ *     twice, even concurrently, doesn't overwrite who promoted them.</li>
+ *     <li>A demotion is one ordered {@code bulkWrite} which transfers the sub-admins before deleting the admin,
+ *     so a failure midway leaves the admin without their sub-admins, and never leaves the sub-admins orphaned.</li>
+ * </ul>
+ * <p>
+ * The admins form a hierarchy through <i>promotedBy</i>, whose subtrees are resolved with a single
+ * {@code $graphLookup} aggregation, however deep they are, and reassigned with a single {@code $merge} aggregation
+ * into the admins collection (which requires MongoDB 4.4 or later).
+ */
+public class AdminRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminRepository.class);
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+    private static final BulkWriteOptions ORDERED = new BulkWriteOptions().ordered(true);
+
+    /**
+     * The admins collection.
+     */
+    protected final AsyncCollection admins;
+
+    /**
+     * Notified of the admins promoted and demoted through the repository.
+     */
+    protected final List<AdminsListener> adminsListeners = new CopyOnWriteArrayList<>();
+
+    public AdminRepository(MongoCollection<Document> admins) {
+        this(new BlockingCollection(admins));
+    }
+
+    public AdminRepository(AsyncCollection admins) {
+        this.admins = admins;
+    }
+
+    /**
+     * Registers a listener to be notified of the admins promoted and demoted through the repository.
+     *
+     * @param listener The listener to register.
+     */
+    public void registerAdminsListener(AdminsListener listener) {
+        adminsListeners.add(listener);
+    }
+
+    /**
+     * Finds the document of an admin.
+     *
+     * @param userId The user id of the admin.
+     * @return The document of the admin, completed with {@code null} if the user is not an admin.
+     */
+    public CompletionStage<Document> find(int userId) {
+        return admins.first(eq("_id", userId));
+    }
+
+    /**
+     * Promotes a user into an admin, unless they're an admin already.
+     *
+     * @param userId     The id of the user to promote.
+     * @param promotedBy The id of the admin promoting the user.
+     * @return Whether the user got promoted, {@code false} if they're an admin already.
+     */
+    public CompletionStage<Boolean> promote(int userId, int promotedBy) {
+        return admins.updateOne(eq("_id", userId), combine(
+                setOnInsert("promotedBy", promotedBy),
+                setOnInsert("promotedAt", (int) (System.currentTimeMillis() / 1000))), UPSERT).thenApply(result -> {
+            if (result.getUpsertedId() == null) return false;
+
+            for (AdminsListener listener : adminsListeners) notify(listener, userId, promotedBy, true);
+            return true;
+        });
+    }
+
+    /**
+     * Demotes an admin, and transfers their sub-admins into the demoting admin.
+     * <p>
+     * The caller is responsible for checking that the demoting admin is allowed to.
+     *
+     * @param userId    The id of the admin to demote.
+     * @param demotedBy The id of the admin demoting them, who takes over their sub-admins.
+     * @return Whether the admin got demoted, {@code false} if they weren't an admin.
+     */
+    public CompletionStage<Boolean> demote(int userId, int demotedBy) {
+        List<WriteModel<Document>> writes = List.of(
+                new UpdateManyModel<>(eq("promotedBy", userId), set("promotedBy", demotedBy)),
+                new DeleteOneModel<>(eq("_id", userId)));
+
+        return admins.bulkWrite(writes, ORDERED).thenApply((BulkWriteResult result) -> {
+            if (result.getDeletedCount() == 0) return false;
+
+            logger.debug("Transferred {} sub-admins from ({}) to ({})", result.getModifiedCount(), userId, demotedBy);
+            for (AdminsListener listener : adminsListeners) notify(listener, userId, demotedBy, false);
+            return true;
+        });
+    }
+
+    /**
+     * Finds all the admins, with only their <i>_id</i> and <i>promotedBy</i> fields.
+     *
+     * @return The documents of the admins.
+     */
+    public CompletionStage<List<Document>> findAll() {
+        return admins.find(new Document(), include("_id", "promotedBy"));
+    }
+
+    /**
+     * Creates the aggregation pipeline which matches the direct sub-admins of an admin,
+     * each with all of its' own sub-admins at any depth in a <i>descendants</i> array.
+     *
+     * @param adminId The id of the admin, who doesn't need to have a document (ex: the bot owner).
+     * @return The aggregation pipeline.
+     */
+    protected List<Bson> subtreePipeline(int adminId) {
+        return new ArrayList<>(List.of(
+                Aggregates.match(eq("promotedBy", adminId)),
+                Aggregates.graphLookup(admins.getNamespace().getCollectionName(), "$_id", "_id", "promotedBy",
+                        "descendants", new GraphLookupOptions()
+                                .depthField("depth")
+                                .restrictSearchWithMatch(ne("_id", adminId))))); //In case of a cycle.
+    }
+
+    /**
+     * Lists all the sub-admins of an admin, at any depth.
+     *
+     * @param adminId The id of the admin.
+     * @return The documents of the sub-admins, each with a <i>depth</i> field ({@code 0} for the direct sub-admins),
+     * and listed after the admin who promoted them.
+     */
+    public CompletionStage<List<Document>> subtree(int adminId) {
+        return admins.aggregate(subtreePipeline(adminId)).thenApply(children -> {
+            List<Document> subtree = new ArrayList<>();
+            for (Document child : children) {
+                List<Document> descendants = child.getList("descendants", Document.class);
+                child.remove("descendants");
+                child.put("depth", 0);
+                subtree.add(child);
+
+                //The depth counted from the child.
+                descendants.sort((a, b) -> Long.compare(a.getLong("depth"), b.getLong("depth")));
+                for (Document descendant : descendants) {
+                    descendant.put("depth", (int) (descendant.getLong("depth") + 1));
+                    subtree.add(descendant);
+                }
+            }
+            return subtree;
+        });
+    }
+
+    /**
+     * Counts all the sub-admins of an admin, at any depth.
+     *
+     * @param adminId The id of the admin.
+     * @return The number of sub-admins.
+     */
+    public CompletionStage<Integer> countSubtree(int adminId) {
+        List<Bson> pipeline = subtreePipeline(adminId);
+        pipeline.add(Aggregates.group(null, Accumulators.sum("count",
+                new Document("$add", List.of(1, new Document("$size", "$descendants"))))));
+
+        return admins.aggregate(pipeline).thenApply(result -> result.isEmpty() ? 0 : result.get(0).getInteger("count"));
+    }
+
+    /**
+     * Reassigns all the sub-admins of an admin, at any depth, to be direct sub-admins of another admin.
+     * <p>
+     * The subtree is resolved and rewritten by the same aggregation, which marks the reassigned admins
+     * with the id of the reassignment (<i>reassignedBy</i>), so exactly the modified admins are read back
+     * and reported to the listeners. The whole subtree is left as is if the new admin is within it.
+     *
+     * @param adminId    The id of the admin whose subtree is reassigned.
+     * @param promotedBy The id of the admin to reassign the subtree to, which must not be within it.
+     * @return The ids of the reassigned admins, completed exceptionally with an {@code IllegalArgumentException}
+     * if the new admin is within the subtree.
+     */
+    public CompletionStage<Set<Integer>> reassignSubtree(int adminId, int promotedBy) {
+        ObjectId reassignment = new ObjectId();
+
+        List<Bson> pipeline = subtreePipeline(adminId);
+        pipeline.addAll(List.of(
+                Aggregates.project(new Document("_id", 0).append("ids",
+                        new Document("$concatArrays", List.of(List.of("$_id"), "$descendants._id")))),
+                Aggregates.group(null, Accumulators.push("ids", "$ids")),
+                Aggregates.project(new Document("ids", new Document("$reduce", new Document("input", "$ids")
+                        .append("initialValue", List.of())
+                        .append("in", new Document("$concatArrays", List.of("$$value", "$$this")))))),
+                Aggregates.match(ne("ids", promotedBy)), //Nothing is written if the new admin is within the subtree.
+                Aggregates.unwind("$ids"),
+                Aggregates.project(new Document("_id", "$ids")
+                        .append("promotedBy", new Document("$literal", promotedBy))
+                        .append("reassignedBy", new Document("$literal", reassignment))),
+                Aggregates.merge(admins.getNamespace().getCollectionName(), new MergeOptions()
+                        .whenMatched(MergeOptions.WhenMatched.MERGE)
+                        .whenNotMatched(MergeOptions.WhenNotMatched.DISCARD))));
+
+        return admins.aggregateToCollection(pipeline)
+                .thenCompose(ignored -> admins.find(eq("reassignedBy", reassignment), include("_id")))
+                .thenCompose(documents -> {
+                    Set<Integer> userIds = new LinkedHashSet<>();
+                    for (Document document : documents) userIds.add(document.getInteger("_id"));
+                    if (!userIds.isEmpty()) return CompletableFuture.completedFuture(userIds);
+
+                    //Either an empty subtree, or rejected for containing the new admin.
+                    return isMember(adminId, promotedBy).thenApply(member -> {
+                        if (member) throw new IllegalArgumentException(
+                                "Can't reassign the subtree of (" + adminId + ") into its' member (" + promotedBy + ")");
+                        return userIds;
+                    });
+                })
+                .thenApply(userIds -> {
+                    if (userIds.isEmpty()) return userIds;
+                    for (AdminsListener listener : adminsListeners) {
+                        try {
+                            listener.adminsReassigned(userIds, promotedBy);
+                        } catch (RuntimeException e) {
+                            logger.error("Admins listener failed on the reassignment of ({})'s subtree", adminId, e);
+                        }
+                    }
+                    return userIds;
+                });
+    }
+
+    /**
+     * Checks if an admin is within the subtree of another admin.
+     *
+     * @param adminId The id of the admin whose subtree is checked.
+     * @param userId  The id of the admin to look for.
+     * @return Whether the admin is within the subtree.
+     */
+    private CompletionStage<Boolean> isMember(int adminId, int userId) {
+        return subtree(adminId).thenApply(subtree -> {
+            for (Document document : subtree) if (document.getInteger("_id") == userId) return true;
+            return false;
+        });
+    }
+
+    private void notify(AdminsListener listener, int userId, int by, boolean promoted) {
+        try {
+            if (promoted) listener.adminPromoted(userId, by);
+            else listener.adminDemoted(userId, by);
+        } catch (RuntimeException e) {
+            logger.error("Admins listener failed on the {} of ({})", promoted ? "promotion" : "demotion", userId, e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.rami_sabbagh.telegram.alice_framework.mongodb;
+
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.commands.AdminsListener;
+import org.bson.Document;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory copy of the admins hierarchy, for answering who promoted whom without querying the database.
+ * <p>
+ * It's loaded from the admins collection, then kept updated as an admins listener of the {@code AdminRepository},
+ * so (like the admins cache of the authorizer) it only sees the changes made by this instance.
+ */
+public class AdminTree implements AdminsListener {
+
+    /**
+     * The id of the admin who promoted each admin, {@code null} for the admins added by hand.
+     */
+    private final Map<Integer, Integer> promoters = new HashMap<>();
+
+    /**
+     * The direct sub-admins of each admin who has any.
+     */
+    private final Map<Integer, Set<Integer>> subAdmins = new HashMap<>();
+
+    /**
+     * Replaces the tree with the admins from the collection.
+     *
+     * @param admins The documents of the admins, with their <i>_id</i> and <i>promotedBy</i> fields.
+     */
+    public synchronized void load(Collection<Document> admins) {
+        promoters.clear();
+        subAdmins.clear();
+        for (Document admin : admins) add(admin.getInteger("_id"), admin.getInteger("promotedBy"));
+    }
+
+    /**
+     * Checks if a user is an admin.
+     *
+     * @param userId The id of the user.
+     * @return {@code true} if the user is an admin.
+     */
+    public synchronized boolean isAdmin(int userId) {
+        return promoters.containsKey(userId);
+    }
+
+    /**
+     * Counts the admins.
+     *
+     * @return The number of admins.
+     */
+    public synchronized int size() {
+        return promoters.size();
+    }
+
+    /**
+     * Gets the admin who promoted an admin.
+     *
+     * @param userId The id of the admin.
+     * @return The id of the admin who promoted them, {@code null} if they were added by hand or aren't an admin.
+     */
+    public synchronized Integer promotedBy(int userId) {
+        return promoters.get(userId);
+    }
+
+    /**
+     * Gets the direct sub-admins of an admin.
+     *
+     * @param userId The id of the admin.
+     * @return The ids of the direct sub-admins.
+     */
+    public synchronized List<Integer> subAdmins(int userId) {
+        Set<Integer> children = subAdmins.get(userId);
+        return children == null ? Collections.emptyList() : new ArrayList<>(children);
+    }
+
+    /**
+     * Gets all the sub-admins of an admin, at any depth.
+     *
+     * @param userId The id of the admin.
+     * @return The ids of the sub-admins, listed after the admin who promoted them.
+     */
+    public synchronized List<Integer> subtree(int userId) {
+        Set<Integer> subtree = new LinkedHashSet<>();
+        Deque<Integer> pending = new ArrayDeque<>(subAdmins(userId));
+
+        while (!pending.isEmpty()) {
+            int adminId = pending.poll();
+            if (adminId == userId || !subtree.add(adminId)) continue; //In case of a cycle.
+
+            Set<Integer> children = subAdmins.get(adminId);
+            if (children != null) pending.addAll(children);
+        }
+
+        return new ArrayList<>(subtree);
+    }
+
+    /**
+     * Gets the chain of admins who promoted an admin, from who promoted them directly up to the top.
+     *
+     * @param userId The id of the admin.
+     * @return The ids of the promoting admins, the last one is either added by hand, or isn't an admin (ex: the owner).
+     */
+    public synchronized List<Integer> promotionChain(int userId) {
+        Set<Integer> chain = new LinkedHashSet<>();
+        Integer promoter = promoters.get(userId);
+
+        while (promoter != null && promoter != userId && chain.add(promoter))
+            promoter = promoters.get(promoter);
+
+        return new ArrayList<>(chain);
+    }
+
+    @Override
+    public synchronized void adminPromoted(int userId, int promotedBy) {
+        if (!promoters.containsKey(userId)) add(userId, promotedBy);
+    }
+
+    @Override
+    public synchronized void adminDemoted(int userId, int demotedBy) {
+        if (!promoters.containsKey(userId)) return;
+        unlink(userId);
+        promoters.remove(userId);
+
+        //The sub-admins are transferred into the demoting admin.
+        Set<Integer> children = subAdmins.remove(userId);
+        if (children != null) for (int child : children) move(child, demotedBy);
+    }
+
+    @Override
+    public synchronized void adminsReassigned(Collection<Integer> userIds, int promotedBy) {
+        for (int userId : userIds) if (promoters.containsKey(userId)) move(userId, promotedBy);
+    }
+
+    private void add(int userId, Integer promotedBy) {
+        promoters.put(userId, promotedBy);
+        if (promotedBy != null) subAdmins.computeIfAbsent(promotedBy, id -> new LinkedHashSet<>()).add(userId);
+    }
+
+    private void move(int userId, int promotedBy) {
+        unlink(userId);
+        add(userId, promotedBy);
+    }
+
+    private void unlink(int userId) {
+        Integer promoter = promoters.get(userId);
+        if (promoter == null) return;
+
+        Set<Integer> siblings = subAdmins.get(promoter);
+        if (siblings != null && siblings.remove(userId) && siblings.isEmpty()) subAdmins.remove(promoter);
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.rami_sabbagh.telegram.alice_framework.mongodb;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The MongoDB collection operations used by the framework's components, with their results as {@code CompletionStage}s.
+ * <p>
+ * So the same components can run over the sync driver ({@link BlockingCollection}), which completes each operation
+ * on the calling thread, or over the reactive streams driver ({@code ReactiveCollection}), which doesn't block
+ * any thread waiting for the database.
+ * <p>
+ * The failures of the operations complete the stages exceptionally, instead of being thrown.
+ */
+public interface AsyncCollection {
+
+    /**
+     * Gets the namespace of the collection, for the aggregation stages which refer to it by name.
+     *
+     * @return The namespace of the collection.
+     */
+    MongoNamespace getNamespace();
+
+    /**
+     * Finds the first document matching a filter.
+     *
+     * @param filter The query filter.
+     * @return The document, completed with {@code null} if none matched.
+     */
+    CompletionStage<Document> first(Bson filter);
+
+    /**
+     * Finds all the documents matching a filter.
+     *
+     * @param filter     The query filter.
+     * @param projection The fields to return, {@code null} for all of them.
+     * @return The documents.
+     */
+    CompletionStage<List<Document>> find(Bson filter, Bson projection);
+
+    /**
+     * Runs an aggregation pipeline.
+     *
+     * @param pipeline The aggregation pipeline.
+     * @return The resulting documents.
+     */
+    CompletionStage<List<Document>> aggregate(List<? extends Bson> pipeline);
+
+    /**
+     * Runs an aggregation pipeline which ends with an {@code $out} or {@code $merge} stage,
+     * without reading back the output collection.
+     *
+     * @param pipeline The aggregation pipeline.
+     * @return The completion of the aggregation.
+     */
+    CompletionStage<Void> aggregateToCollection(List<? extends Bson> pipeline);
+
+    /**
+     * Inserts a document.
+     *
+     * @param document The document to insert.
+     * @return The insertion result.
+     */
+    CompletionStage<InsertOneResult> insertOne(Document document);
+
+    /**
+     * Replaces a document.
+     *
+     * @param filter      The query filter.
+     * @param replacement The replacement document.
+     * @param options     The replace options.
+     * @return The replacement result.
+     */
+    CompletionStage<UpdateResult> replaceOne(Bson filter, Document replacement, ReplaceOptions options);
+
+    /**
+     * Updates a document.
+     *
+     * @param filter  The query filter.
+     * @param update  The update operators.
+     * @param options The update options.
+     * @return The update result.
+     */
+    CompletionStage<UpdateResult> updateOne(Bson filter, Bson update, UpdateOptions options);
+
+    /**
+     * Updates all the documents matching a filter.
+     *
+     * @param filter The query filter.
+     * @param update The update operators.
+     * @return The update result.
+     */
+    CompletionStage<UpdateResult> updateMany(Bson filter, Bson update);
+
+    /**
+     * Deletes a document.
+     *
+     * @param filter The query filter.
+     * @return The deletion result.
+     */
+    CompletionStage<DeleteResult> deleteOne(Bson filter);
+
+    /**
+     * Executes a batch of writes.
+     *
+     * @param requests The writes to execute.
+     * @param options  The bulk write options.
+     * @return The bulk write result, completed exceptionally with a {@code MongoBulkWriteException} if any failed.
+     */
+    CompletionStage<BulkWriteResult> bulkWrite(List<? extends WriteModel<Document>> requests, BulkWriteOptions options);
+
+    /**
+     * Creates indexes, which is a no-op for the indexes which exist already with the same options.
+     *
+     * @param indexes The indexes to create.
+     * @return The names of the indexes.
+     */
+    CompletionStage<List<String>> createIndexes(List<IndexModel> indexes);
+}
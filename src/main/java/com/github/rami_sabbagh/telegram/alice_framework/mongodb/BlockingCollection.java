@@ -0,0 +1,113 @@
+package com.github.rami_sabbagh.telegram.alice_framework.mongodb;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * An {@code AsyncCollection} over the sync MongoDB driver, which executes each operation on the calling thread,
+ * and returns it as an already completed stage.
+ */
+public class BlockingCollection implements AsyncCollection {
+
+    /**
+     * The sync collection.
+     */
+    public final MongoCollection<Document> collection;
+
+    public BlockingCollection(MongoCollection<Document> collection) {
+        this.collection = collection;
+    }
+
+    private static <T> CompletionStage<T> complete(Supplier<T> operation) {
+        try {
+            return CompletableFuture.completedFuture(operation.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public MongoNamespace getNamespace() {
+        return collection.getNamespace();
+    }
+
+    @Override
+    public CompletionStage<Document> first(Bson filter) {
+        return complete(() -> collection.find(filter).first());
+    }
+
+    @Override
+    public CompletionStage<List<Document>> find(Bson filter, Bson projection) {
+        return complete(() -> {
+            FindIterable<Document> documents = collection.find(filter);
+            if (projection != null) documents.projection(projection);
+            return documents.into(new ArrayList<>());
+        });
+    }
+
+    @Override
+    public CompletionStage<List<Document>> aggregate(List<? extends Bson> pipeline) {
+        return complete(() -> collection.aggregate(pipeline).into(new ArrayList<>()));
+    }
+
+    @Override
+    public CompletionStage<Void> aggregateToCollection(List<? extends Bson> pipeline) {
+        return complete(() -> {
+            collection.aggregate(pipeline).toCollection();
+            return null;
+        });
+    }
+
+    @Override
+    public CompletionStage<InsertOneResult> insertOne(Document document) {
+        return complete(() -> collection.insertOne(document));
+    }
+
+    @Override
+    public CompletionStage<UpdateResult> replaceOne(Bson filter, Document replacement, ReplaceOptions options) {
+        return complete(() -> collection.replaceOne(filter, replacement, options));
+    }
+
+    @Override
+    public CompletionStage<UpdateResult> updateOne(Bson filter, Bson update, UpdateOptions options) {
+        return complete(() -> collection.updateOne(filter, update, options));
+    }
+
+    @Override
+    public CompletionStage<UpdateResult> updateMany(Bson filter, Bson update) {
+        return complete(() -> collection.updateMany(filter, update));
+    }
+
+    @Override
+    public CompletionStage<DeleteResult> deleteOne(Bson filter) {
+        return complete(() -> collection.deleteOne(filter));
+    }
+
+    @Override
+    public CompletionStage<BulkWriteResult> bulkWrite(List<? extends WriteModel<Document>> requests, BulkWriteOptions options) {
+        return complete(() -> collection.bulkWrite(requests, options));
+    }
+
+    @Override
+    public CompletionStage<List<String>> createIndexes(List<IndexModel> indexes) {
+        return complete(() -> collection.createIndexes(indexes));
+    }
+}
@@ -0,0 +1,379 @@
+package com.github.rami_sabbagh.telegram.alice_framework.mongodb;
+
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.RateLimiter;
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.SilentExecutor;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.updateshandlers.SentCallback;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Sorts.ascending;
+
+/**
+ * Sends a message to all the chats recorded in the chats collection.
+ * <p>
+ * The chat ids are streamed from a cursor over the collection in the {@code _id} order, and the messages are sent
+ * asynchronously, paced by a rate limiter (Telegram allows about 30 messages per second, and 1 per chat).
+ * The chats which blocked or kicked the bot are removed from the collection.
+ * <p>
+ * The progress of each broadcast is checkpointed into a collection, after the messages of the checkpointed chats
+ * were all sent, so a broadcast interrupted by a restart resumes from its' last checkpoint when started again.
+ */
+public class BroadcastService implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastService.class);
+
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+
+    /**
+     * The number of chat ids fetched by each round trip of the cursor.
+     */
+    private static final int CURSOR_BATCH_SIZE = 1000;
+
+    /**
+     * The number of chats between the checkpoints.
+     */
+    private static final int CHECKPOINT_INTERVAL = 500;
+
+    /**
+     * The maximum number of messages which are sent without a response yet.
+     */
+    private static final int MAX_IN_FLIGHT = 32;
+
+    private static final int FORBIDDEN = 403;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    protected final SilentExecutor silent;
+    protected final MongoCollection<Document> chats;
+    protected final MongoCollection<Document> checkpoints;
+    protected final ChatsTracker chatsTracker;
+    protected final RateLimiter rateLimiter;
+
+    /**
+     * Runs the broadcasts, a thread for each.
+     */
+    protected final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "alice-broadcast");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The broadcasts which were started and haven't stopped yet.
+     */
+    protected final Set<Broadcast> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a new broadcast service, which paces the messages by Telegram's limits.
+     *
+     * @param silent       The silent executor to send the messages with.
+     * @param chats        The chats collection.
+     * @param checkpoints  The collection to checkpoint the broadcasts into.
+     * @param chatsTracker The chats tracker to remove the blocked chats with.
+     */
+    public BroadcastService(SilentExecutor silent, MongoCollection<Document> chats,
+                            MongoCollection<Document> checkpoints, ChatsTracker chatsTracker) {
+        this(silent, chats, checkpoints, chatsTracker, new RateLimiter());
+    }
+
+    /**
+     * Creates a new broadcast service.
+     *
+     * @param silent       The silent executor to send the messages with.
+     * @param chats        The chats collection.
+     * @param checkpoints  The collection to checkpoint the broadcasts into.
+     * @param chatsTracker The chats tracker to remove the blocked chats with.
+     * @param rateLimiter  The rate limiter to pace the messages with, shared by the broadcasts.
+     */
+    public BroadcastService(SilentExecutor silent, MongoCollection<Document> chats,
+                            MongoCollection<Document> checkpoints, ChatsTracker chatsTracker, RateLimiter rateLimiter) {
+        this.silent = silent;
+        this.chats = chats;
+        this.checkpoints = checkpoints;
+        this.chatsTracker = chatsTracker;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Starts a broadcast, or resumes it from its' last checkpoint if it was started before.
+     * <p>
+     * A broadcast which has finished already completes without sending anything.
+     *
+     * @param broadcastId The unique id of the broadcast, which its' checkpoint is stored by.
+     * @param message     Creates the message to send into a chat, by its' id.
+     * @return The started broadcast.
+     */
+    public Broadcast start(String broadcastId, LongFunction<? extends BotApiMethod<Message>> message) {
+        Broadcast broadcast = new Broadcast(broadcastId, message);
+        running.add(broadcast);
+        try {
+            workers.execute(broadcast::run);
+        } catch (RejectedExecutionException e) {
+            running.remove(broadcast);
+            broadcast.completion.completeExceptionally(e);
+        }
+        return broadcast;
+    }
+
+    /**
+     * Cancels the running broadcasts, which send their in flight messages and retries, and checkpoint their progress
+     * before stopping.
+     * <p>
+     * The broadcasts which don't stop in 10 seconds (ex: paused by Telegram's rate limit) are interrupted,
+     * and checkpoint their progress without waiting for their in flight messages.
+     */
+    @Override
+    public void close() {
+        for (Broadcast broadcast : running) broadcast.cancel();
+        workers.shutdown();
+        try {
+            if (workers.awaitTermination(10, TimeUnit.SECONDS)) return;
+
+            logger.warn("The broadcasts didn't stop in time, interrupting them");
+            workers.shutdownNow();
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS))
+                logger.warn("The broadcasts didn't stop after being interrupted");
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A running broadcast.
+     */
+    public class Broadcast {
+
+        /**
+         * The unique id of the broadcast.
+         */
+        public final String id;
+
+        private final LongFunction<? extends BotApiMethod<Message>> message;
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder removed = new LongAdder();
+
+        private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
+        /**
+         * The chats which were rate limited, to be sent to once more.
+         */
+        private final Queue<Long> retries = new ConcurrentLinkedQueue<>();
+
+        private volatile boolean cancelled;
+
+        /**
+         * The id of the last chat which was sent to, used by the broadcast thread only.
+         */
+        private Long lastChatId;
+
+        private Broadcast(String id, LongFunction<? extends BotApiMethod<Message>> message) {
+            this.id = id;
+            this.message = message;
+        }
+
+        /**
+         * Counts the messages sent successfully.
+         *
+         * @return The number of messages sent, including before a resume.
+         */
+        public long sent() {
+            return sent.sum();
+        }
+
+        /**
+         * Counts the messages which failed to be sent.
+         *
+         * @return The number of failed messages, including before a resume.
+         */
+        public long failed() {
+            return failed.sum();
+        }
+
+        /**
+         * Counts the chats which were removed for blocking or kicking the bot.
+         *
+         * @return The number of removed chats, including before a resume.
+         */
+        public long removed() {
+            return removed.sum();
+        }
+
+        /**
+         * Gets the completion of the broadcast, which completes once it finishes or is cancelled.
+         *
+         * @return The completion of the broadcast.
+         */
+        public CompletableFuture<Void> completion() {
+            return completion;
+        }
+
+        /**
+         * Stops the broadcast after checkpointing its' progress, so it can be resumed later.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void run() {
+            try {
+                Document checkpoint = checkpoints.find(eq("_id", id)).first();
+                if (checkpoint != null) {
+                    sent.add(checkpoint.getLong("sent"));
+                    failed.add(checkpoint.getLong("failed"));
+                    removed.add(checkpoint.getLong("removed"));
+
+                    if (checkpoint.getBoolean("finished")) {
+                        completion.complete(null);
+                        return;
+                    }
+
+                    lastChatId = checkpoint.getLong("lastChatId");
+                    logger.info("Resuming broadcast '{}' after chat ({})", id, lastChatId);
+                }
+
+                Bson filter = lastChatId == null ? new Document() : gt("_id", lastChatId);
+                try (MongoCursor<Document> cursor = chats.find(filter).projection(include("_id"))
+                        .sort(ascending("_id")).batchSize(CURSOR_BATCH_SIZE).iterator()) {
+                    int sinceCheckpoint = 0;
+
+                    while (!cancelled && cursor.hasNext()) {
+                        long chatId = ((Number) cursor.next().get("_id")).longValue();
+                        send(chatId, true);
+                        lastChatId = chatId;
+
+                        Long retry;
+                        while ((retry = retries.poll()) != null) send(retry, false);
+
+                        if (++sinceCheckpoint == CHECKPOINT_INTERVAL) {
+                            checkpoint(false);
+                            sinceCheckpoint = 0;
+                        }
+                    }
+                }
+
+                checkpoint(!cancelled);
+                logger.info("Broadcast '{}' {}: {} sent, {} failed, {} removed", id, cancelled ? "cancelled" : "finished",
+                        sent(), failed(), removed());
+                completion.complete(null);
+            } catch (InterruptedException e) {
+                try {
+                    //Interrupted while waiting for a slot, so the in flight messages are not awaited.
+                    writeCheckpoint(false);
+                } catch (MongoException exception) {
+                    logger.error("Failed to checkpoint broadcast '{}'", id, exception);
+                }
+                completion.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                logger.error("Broadcast '{}' failed", id, e);
+                completion.completeExceptionally(e);
+            } finally {
+                running.remove(this);
+            }
+        }
+
+        private void send(long chatId, boolean retry) throws InterruptedException {
+            inFlight.acquire();
+            rateLimiter.acquire(chatId);
+
+            BotApiMethod<Message> method = message.apply(chatId);
+            boolean submitted = silent.executeAsync(method, new SentCallback<Message>() {
+                @Override
+                public void onResult(BotApiMethod<Message> method, Message response) {
+                    sent.increment();
+                    inFlight.release();
+                }
+
+                @Override
+                public void onError(BotApiMethod<Message> method, TelegramApiRequestException e) {
+                    rejected(chatId, e, retry);
+                    inFlight.release();
+                }
+
+                @Override
+                public void onException(BotApiMethod<Message> method, Exception e) {
+                    logger.error("Failed to broadcast into chat ({})", chatId, e);
+                    failed.increment();
+                    inFlight.release();
+                }
+            });
+
+            if (!submitted) {
+                failed.increment();
+                inFlight.release();
+            }
+        }
+
+        private void rejected(long chatId, TelegramApiRequestException e, boolean retry) {
+            Integer errorCode = e.getErrorCode();
+
+            if (errorCode != null && errorCode == FORBIDDEN) {
+                //Blocked by the user, kicked from the group, or the user is deactivated.
+                chatsTracker.removeChat(chatId);
+                removed.increment();
+            } else if (errorCode != null && errorCode == TOO_MANY_REQUESTS) {
+                Integer retryAfter = e.getParameters() == null ? null : e.getParameters().getRetryAfter();
+                rateLimiter.pause(retryAfter == null ? 1 : retryAfter);
+                if (retry) retries.add(chatId);
+                else failed.increment();
+            } else {
+                logger.warn("Failed to broadcast into chat ({}): {}", chatId, e.getApiResponse());
+                failed.increment();
+            }
+        }
+
+        /**
+         * Waits for the in flight messages and the retries, then writes a checkpoint.
+         *
+         * @param finished Whether the broadcast has finished.
+         */
+        private void checkpoint(boolean finished) throws InterruptedException {
+            do {
+                inFlight.acquire(MAX_IN_FLIGHT);
+                inFlight.release(MAX_IN_FLIGHT);
+
+                Long retry;
+                while ((retry = retries.poll()) != null) send(retry, false);
+            } while (inFlight.availablePermits() != MAX_IN_FLIGHT || !retries.isEmpty());
+
+            writeCheckpoint(finished);
+        }
+
+        private void writeCheckpoint(boolean finished) {
+            checkpoints.replaceOne(eq("_id", id), new Document("_id", id)
+                    .append("lastChatId", lastChatId)
+                    .append("sent", sent())
+                    .append("failed", failed())
+                    .append("removed", removed())
+                    .append("finished", finished)
+                    .append("updatedAt", (int) (System.currentTimeMillis() / 1000L)), UPSERT);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.github.rami_sabbagh.telegram.alice_framework.mongodb;
+
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.ChatUtilities;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.setOnInsert;
+
+/**
+ * Pre-computed counters of the chats tracked by the {@code ChatsTracker}, so they're reported without scanning
+ * the chats collection.
+ * <p>
+ * The counters are kept in a stats collection: the number of chats of each type in the <i>chats</i> document
+ * (a field for each {@code ChatType} API name), and the number of chats which joined and left on each day (UTC)
+ * in a <i>chats:yyyy-mm-dd</i> document.
+ * <p>
+ * The changes are aggregated in memory, and written with {@code $inc} by the flushes of the chats tracker,
+ * so the counters of all the instances of the bot add up.
+ */
+public class ChatStatistics {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatStatistics.class);
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+    private static final ReplaceOptions REPLACE_UPSERT = new ReplaceOptions().upsert(true);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+    /**
+     * The id of the document counting the chats of each type.
+     */
+    public static final String CHATS = "chats";
+
+    /**
+     * The stats collection.
+     */
+    protected final AsyncCollection stats;
+
+    /**
+     * The change in the number of chats of each type since the last flush, mapped by the type API name.
+     */
+    protected final Map<String, LongAdder> types = new ConcurrentHashMap<>();
+
+    /**
+     * The chats which joined since the last flush, mapped by the day.
+     */
+    protected final Map<String, LongAdder> joins = new ConcurrentHashMap<>();
+
+    /**
+     * The chats which left since the last flush, mapped by the day.
+     */
+    protected final Map<String, LongAdder> leaves = new ConcurrentHashMap<>();
+
+    public ChatStatistics(AsyncCollection stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Gets the id of the document counting the joins and leaves of a day.
+     *
+     * @param day The day.
+     * @return The id of the day's document.
+     */
+    public static String dayId(LocalDate day) {
+        return CHATS + ":" + day;
+    }
+
+    private static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+
+    private static void add(Map<String, LongAdder> counters, String key, long delta) {
+        //Within compute, so the adder can't be swapped out by a flush before it's added to.
+        counters.compute(key, (k, counter) -> {
+            if (counter == null) counter = new LongAdder();
+            counter.add(delta);
+            return counter;
+        });
+    }
+
+    /**
+     * Counts a chat which joined.
+     *
+     * @param type The API name of the chat type.
+     */
+    public void joined(String type) {
+        add(types, type, 1);
+        add(joins, dayId(today()), 1);
+    }
+
+    /**
+     * Counts a chat which left.
+     *
+     * @param type The API name of the chat type.
+     */
+    public void left(String type) {
+        add(types, type, -1);
+        add(leaves, dayId(today()), 1);
+    }
+
+    /**
+     * Counts a chat which changed its' type, ex: a group migrated into a supergroup.
+     *
+     * @param fromType The API name of the old chat type.
+     * @param toType   The API name of the new chat type.
+     */
+    public void changed(String fromType, String toType) {
+        if (fromType.equals(toType)) return;
+        add(types, fromType, -1);
+        add(types, toType, 1);
+    }
+
+    /**
+     * Counts a chat which was merged into another one which is counted already, ex: a group migrated into
+     * a supergroup which was recorded before the migration.
+     *
+     * @param fromType The API name of the merged chat type.
+     */
+    public void merged(String fromType) {
+        add(types, fromType, -1);
+    }
+
+    /**
+     * Writes the changes counted since the last flush into the stats collection.
+     *
+     * @return The completion of the flush, which never completes exceptionally (the failures are logged).
+     */
+    public CompletionStage<Void> flush() {
+        List<Bson> typeUpdates = new ArrayList<>();
+        for (String type : types.keySet()) {
+            LongAdder counter = types.remove(type);
+            long delta = counter == null ? 0 : counter.sum();
+            if (delta != 0) typeUpdates.add(inc(type, delta));
+        }
+
+        Map<String, List<Bson>> dayUpdates = new LinkedHashMap<>();
+        collectDays(joins, "joins", dayUpdates);
+        collectDays(leaves, "leaves", dayUpdates);
+
+        List<WriteModel<Document>> models = new ArrayList<>();
+        if (!typeUpdates.isEmpty()) models.add(new UpdateOneModel<>(eq("_id", CHATS), combine(typeUpdates), UPSERT));
+        for (Map.Entry<String, List<Bson>> entry : dayUpdates.entrySet()) {
+            List<Bson> updates = entry.getValue();
+            updates.add(setOnInsert("day", entry.getKey().substring(CHATS.length() + 1)));
+            models.add(new UpdateOneModel<>(eq("_id", entry.getKey()), combine(updates), UPSERT));
+        }
+
+        if (models.isEmpty()) return CompletableFuture.completedFuture(null);
+        return stats.bulkWrite(models, UNORDERED).handle((result, throwable) -> {
+            if (throwable != null) logger.error("Failed to write the chats statistics", throwable);
+            return null;
+        });
+    }
+
+    private static void collectDays(Map<String, LongAdder> counters, String field, Map<String, List<Bson>> dayUpdates) {
+        for (String day : counters.keySet()) {
+            //Swapped out as a whole, so the chats counted meanwhile go into a fresh adder.
+            LongAdder counter = counters.remove(day);
+            long count = counter == null ? 0 : counter.sum();
+            if (count != 0) dayUpdates.computeIfAbsent(day, id -> new ArrayList<>()).add(inc(field, count));
+        }
+    }
+
+    /**
+     * Counts the chats of each type by scanning the chats collection, replacing the stored counts.
+     * <p>
+     * Meant for initializing the counters of a collection which has been tracked before them.
+     *
+     * @param chats The chats collection.
+     * @return The completion of the recount.
+     */
+    public CompletionStage<Void> recount(AsyncCollection chats) {
+        return chats.aggregate(List.of(Aggregates.group("$type", Accumulators.sum("count", 1)))).thenCompose(groups -> {
+            Document counts = new Document("_id", CHATS);
+            for (Document group : groups) {
+                Object type = group.get("_id");
+                counts.append(type == null ? ChatUtilities.ChatType.UNKNOWN.apiName : type.toString(),
+                        ((Number) group.get("count")).longValue());
+            }
+            logger.info("Recounted the chats: {}", counts);
+            return stats.replaceOne(eq("_id", CHATS), counts, REPLACE_UPSERT);
+        }).thenApply(result -> null);
+    }
+
+    /**
+     * Recounts the chats of each type if they were never counted before.
+     *
+     * @param chats The chats collection.
+     * @return The completion of the check, and the recount if needed.
+     */
+    public CompletionStage<Void> ensureCounted(AsyncCollection chats) {
+        return stats.first(eq("_id", CHATS)).thenCompose(counts ->
+                counts == null ? recount(chats) : CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Reads the counters, and mirrors them into the Prometheus gauges.
+     *
+     * @param days The number of days to sum the joins and leaves of, including today.
+     * @return The counters, excluding the changes which weren't flushed yet.
+     */
+    public CompletionStage<Snapshot> read(int days) {
+        LocalDate today = today();
+        List<String> ids = new ArrayList<>();
+        ids.add(CHATS);
+        for (int day = 0; day < days; day++) ids.add(dayId(today.minusDays(day)));
+
+        return stats.find(in("_id", ids), null).thenApply(documents -> {
+            Snapshot snapshot = new Snapshot(days);
+            String todayId = dayId(today);
+
+            for (Document document : documents) {
+                String id = document.getString("_id");
+                if (CHATS.equals(id)) {
+                    for (ChatUtilities.ChatType type : ChatUtilities.ChatType.values()) {
+                        Number count = (Number) document.get(type.apiName);
+                        snapshot.chats.put(type, count == null ? 0 : count.longValue());
+                    }
+                    continue;
+                }
+
+                long joined = count(document, "joins"), left = count(document, "leaves");
+                snapshot.joined += joined;
+                snapshot.left += left;
+                if (todayId.equals(id)) {
+                    snapshot.joinedToday = joined;
+                    snapshot.leftToday = left;
+                }
+            }
+
+            ChatsMetrics.update(snapshot);
+            return snapshot;
+        });
+    }
+
+    private static long count(Document document, String field) {
+        Number count = (Number) document.get(field);
+        return count == null ? 0 : count.longValue();
+    }
+
+    /**
+     * The counters as read from the stats collection.
+     */
+    public static final class Snapshot {
+
+        /**
+         * The number of chats of each type.
+         */
+        public final Map<ChatUtilities.ChatType, Long> chats = new LinkedHashMap<>();
+
+        /**
+         * The number of days the joins and leaves were summed for, including today.
+         */
+        public final int days;
+
+        /**
+         * The chats which joined and left today (UTC).
+         */
+        public long joinedToday, leftToday;
+
+        /**
+         * The chats which joined and left in the summed days.
+         */
+        public long joined, left;
+
+        Snapshot(int days) {
+            this.days = days;
+            for (ChatUtilities.ChatType type : ChatUtilities.ChatType.values()) chats.put(type, 0L);
+        }
+
+        /**
+         * Sums the chats of all the types.
+         *
+         * @return The total number of chats.
+         */
+        public long total() {
+            long total = 0;
+            for (long count : chats.values()) total += count;
+            return total;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.rami_sabbagh.telegram.alice_framework.mongodb;
+
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.ChatUtilities;
+import io.prometheus.client.Gauge;
+
+import java.util.Map;
+
+/**
+ * The Prometheus metrics of the tracked chats, registered in the default registry.
+ * <p>
+ * They mirror the counters of the stats collection each time they're read, so they're the same on all the instances
+ * of the bot.
+ */
+public final class ChatsMetrics {
+
+    /**
+     * The tracked chats, labeled by {@code type}.
+     */
+    public static final Gauge chats = Gauge.build()
+            .name("alice_chats")
+            .help("Tracked chats.")
+            .labelNames("type")
+            .register();
+
+    /**
+     * The chats which joined today (UTC).
+     */
+    public static final Gauge joinedToday = Gauge.build()
+            .name("alice_chats_joined_today")
+            .help("Chats which joined today (UTC).")
+            .register();
+
+    /**
+     * The chats which left today (UTC).
+     */
+    public static final Gauge leftToday = Gauge.build()
+            .name("alice_chats_left_today")
+            .help("Chats which left today (UTC).")
+            .register();
+
+    /**
+     * Sets the gauges from the counters read from the stats collection.
+     *
+     * @param snapshot The counters.
+     */
+    static void update(ChatStatistics.Snapshot snapshot) {
+        for (Map.Entry<ChatUtilities.ChatType, Long> entry : snapshot.chats.entrySet())
+            chats.labels(entry.getKey().apiName).set(entry.getValue());
+        joinedToday.set(snapshot.joinedToday);
+        leftToday.set(snapshot.leftToday);
+    }
+
+    private ChatsMetrics() {
+    }
+}
@@ -1,7 +1,22 @@
 package com.github.rami_sabbagh.telegram.alice_framework.mongodb;
 
 import com.github.rami_sabbagh.telegram.alice_framework.pipes.Handler;
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.ChatUtilities;
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.ConcurrentLongSet;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,28 +25,387 @@ import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.User;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Indexes.ascending;
+import static com.mongodb.client.model.Indexes.descending;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.max;
+import static com.mongodb.client.model.Updates.setOnInsert;
 
-public class ChatsTracker implements Handler<Update> {
+/**
+ * Tracks the chats which the bot is a member of in a MongoDB collection.
+ * <p>
+ * The chats are recorded with idempotent upserts, and the chats already recorded by this instance are remembered
+ * in memory, so repeated {@code /start}s and joins don't touch the database at all.
+ * <p>
+ * The writes are queued and flushed together with an unordered {@code bulkWrite} by a background thread,
+ * once the queue reaches the batch size or every flush interval. Only the last write of each chat is kept in the queue,
+ * so a batch has a single write per chat and can be applied in any order, and the batches are written one after
+ * another, so the writes of each chat are applied in the order they were made.
+ * <p>
+ * The database is accessed through an {@code AsyncCollection}, so with the reactive streams driver
+ * no thread is blocked on the database, not even the flushing thread.
+ * <p>
+ * The activity of the recorded chats (their {@code messages} count and {@code lastActiveAt} time) is aggregated
+ * in memory, and is written with each flush using {@code $inc} and {@code $max}, so it needs no per-message write.
+ * <p>
+ * When the statistics are enabled, the chats which joined and left are counted by the {@code ChatStatistics}
+ * as their writes are applied, and written with the same flushes.
+ */
+public class ChatsTracker implements Handler<Update>, AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatsTracker.class);
 
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+    private static final ReplaceOptions REPLACE_UPSERT = new ReplaceOptions().upsert(true);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+    /**
+     * The indexes of the chats collection, for listing the chats by their type, and by their activity.
+     */
+    public static final List<IndexModel> INDEXES = List.of(
+            new IndexModel(ascending("type")),
+            new IndexModel(descending("lastActiveAt")));
+
     protected final String botUsername;
-    protected final MongoCollection<Document> chats;
+    protected final AsyncCollection chats;
+
+    /**
+     * The number of queued writes which triggers a flush.
+     */
+    protected final int batchSize;
+
+    /**
+     * The chats known to be recorded in the collection.
+     */
+    protected final ConcurrentLongSet knownChats = new ConcurrentLongSet();
+
+    /**
+     * Whether all the recorded chats were loaded into the known chats, so the activity of the other chats is skipped.
+     */
+    protected volatile boolean warmedUp;
+
+    /**
+     * The queued writes mapped by chat id, guarded by itself.
+     */
+    protected final Map<Long, ChatWrite> queue = new LinkedHashMap<>();
+
+    /**
+     * Notified of the chats migrated to a new id, to move their state.
+     */
+    protected final List<MigrationListener> migrationListeners = new CopyOnWriteArrayList<>();
 
+    /**
+     * The activity of the chats since the last flush, mapped by chat id.
+     * <p>
+     * The entries are only modified within the map's {@code compute} methods, and are removed as a whole when
+     * collected, so no message recorded concurrently is lost.
+     */
+    protected final Map<Long, ChatActivity> activity = new ConcurrentHashMap<>();
+
+    /**
+     * The counters of the chats, {@code null} unless enabled.
+     */
+    protected volatile ChatStatistics statistics;
+
+    /**
+     * Serializes the flushes, so the batches are written in order.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * The completion of the last flush, which the next one is chained after, guarded by the flush lock.
+     */
+    private CompletionStage<Void> lastFlush = CompletableFuture.completedFuture(null);
+
+    /**
+     * Flushes the queued writes periodically, and once the queue reaches the batch size.
+     */
+    protected final ScheduledExecutorService flusher;
+
+    /**
+     * Creates a new chats tracker which flushes its' writes in batches of up to 500, at least every second.
+     *
+     * @param botUsername The username of the bot.
+     * @param chats       The chats collection.
+     */
     public ChatsTracker(String botUsername, MongoCollection<Document> chats) {
+        this(botUsername, new BlockingCollection(chats));
+    }
+
+    /**
+     * Creates a new chats tracker which flushes its' writes in batches of up to 500, at least every second.
+     *
+     * @param botUsername The username of the bot.
+     * @param chats       The chats collection.
+     */
+    public ChatsTracker(String botUsername, AsyncCollection chats) {
+        this(botUsername, chats, 500, 1000);
+    }
+
+    /**
+     * Creates a new chats tracker.
+     *
+     * @param botUsername   The username of the bot.
+     * @param chats         The chats collection.
+     * @param batchSize     The number of queued writes which triggers a flush.
+     * @param flushInterval The maximum time the writes can be queued for, in milliseconds.
+     */
+    public ChatsTracker(String botUsername, AsyncCollection chats, int batchSize, long flushInterval) {
+        if (batchSize < 1) throw new IllegalArgumentException("The batch size must be positive!");
+
         this.botUsername = botUsername;
         this.chats = chats;
+        this.batchSize = batchSize;
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "alice-chats-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates the indexes of the chats collection, if missing.
+     *
+     * @return The completion of the indexes creation.
+     */
+    public CompletionStage<Void> ensureIndexes() {
+        return chats.createIndexes(INDEXES).thenAccept(names -> logger.debug("Ensured the chats indexes {}", names));
+    }
+
+    /**
+     * Loads the ids of the recorded chats into memory, so the first messages of each chat after a restart
+     * don't query the database.
+     *
+     * @return The number of the loaded chats.
+     */
+    public CompletionStage<Integer> warmUp() {
+        return chats.find(new Document(), include("_id")).thenApply(documents -> {
+            for (Document document : documents) knownChats.add(((Number) document.get("_id")).longValue());
+            warmedUp = true;
+            logger.info("Loaded {} known chats", documents.size());
+            return documents.size();
+        });
+    }
+
+    /**
+     * Enables counting the chats by their type, and the chats which joined and left each day.
+     * <p>
+     * The counters are read every minute, to update their Prometheus gauges.
+     *
+     * @param statistics The counters to update.
+     */
+    public void enableStatistics(ChatStatistics statistics) {
+        this.statistics = statistics;
+        flusher.scheduleWithFixedDelay(() -> statistics.read(1).exceptionally(throwable -> {
+            logger.warn("Failed to read the chats statistics", throwable);
+            return null;
+        }), 0, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Queues a write, replacing the previous queued write of the chat.
+     *
+     * @param write The write to queue.
+     */
+    protected void enqueue(ChatWrite write) {
+        int size;
+        synchronized (queue) {
+            queue.put(write.chatId, write);
+            size = queue.size();
+        }
+
+        if (size == batchSize) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                flush(); //Closed already.
+            }
+        }
+    }
+
+    /**
+     * Writes the queued writes and the aggregated activity into the database, after any flush in progress.
+     *
+     * @return The completion of the flush, which never completes exceptionally (the failures are logged).
+     */
+    public CompletionStage<Void> flush() {
+        synchronized (flushLock) {
+            List<ChatWrite> batch;
+            synchronized (queue) {
+                batch = new ArrayList<>(queue.values());
+                queue.clear();
+            }
+            List<WriteModel<Document>> activityModels = collectActivity();
+
+            //After the queue, so the activity of the newly recorded chats isn't missed.
+            ChatStatistics statistics = this.statistics;
+            lastFlush = lastFlush.thenCompose(ignored -> writeBatch(batch))
+                    .thenCompose(ignored -> writeActivity(activityModels))
+                    .thenCompose(ignored -> writeStatistics(statistics));
+            return lastFlush;
+        }
+    }
+
+    private CompletionStage<Void> writeStatistics(ChatStatistics statistics) {
+        return statistics == null ? CompletableFuture.completedFuture(null) : statistics.flush();
+    }
+
+    private CompletionStage<Void> writeBatch(List<ChatWrite> batch) {
+        if (batch.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        List<WriteModel<Document>> models = new ArrayList<>(batch.size());
+        for (ChatWrite write : batch) models.add(write.model);
+
+        ChatStatistics statistics = this.statistics;
+        return readRemovedTypes(batch, statistics).thenCompose(removedTypes ->
+                chats.bulkWrite(models, UNORDERED).handle((result, throwable) -> {
+                    Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+
+                    if (cause == null) {
+                        written(batch, result, removedTypes, Set.of(), statistics);
+                    } else if (cause instanceof MongoBulkWriteException) {
+                        MongoBulkWriteException e = (MongoBulkWriteException) cause;
+                        Set<Integer> failed = new HashSet<>();
+                        for (BulkWriteError error : e.getWriteErrors()) {
+                            ChatWrite write = batch.get(error.getIndex());
+                            failed.add(error.getIndex());
+                            if (write.description != null) knownChats.remove(write.chatId); //So it's recorded again.
+                            logger.error("Failed to track the chat ({}): {}", write.chatId, error.getMessage());
+                        }
+                        written(batch, e.getWriteResult(), removedTypes, failed, statistics);
+                    } else {
+                        if (cause instanceof MongoException)
+                            for (ChatWrite write : batch) if (write.description != null) knownChats.remove(write.chatId);
+                        logger.error("Failed to write {} chats tracking changes", batch.size(), cause);
+                    }
+                    return null;
+                }));
+    }
+
+    /**
+     * Reads the types of the chats to be removed by a batch, so they can be counted once removed.
+     *
+     * @param batch      The batch of writes.
+     * @param statistics The counters of the chats, {@code null} if disabled.
+     * @return The types of the recorded chats to be removed, mapped by chat id.
+     */
+    private CompletionStage<Map<Long, String>> readRemovedTypes(List<ChatWrite> batch, ChatStatistics statistics) {
+        Map<Long, String> types = new HashMap<>();
+        if (statistics == null) return CompletableFuture.completedFuture(types);
+
+        List<Long> removed = new ArrayList<>();
+        for (ChatWrite write : batch) if (write.description == null) removed.add(write.chatId);
+        if (removed.isEmpty()) return CompletableFuture.completedFuture(types);
+
+        return chats.find(in("_id", removed), include("type")).handle((documents, throwable) -> {
+            if (throwable != null) {
+                logger.warn("Failed to read the types of {} removed chats", removed.size(), throwable);
+                return types;
+            }
+            for (Document document : documents)
+                types.put(((Number) document.get("_id")).longValue(), document.getString("type"));
+            return types;
+        });
+    }
+
+    private List<WriteModel<Document>> collectActivity() {
+        List<WriteModel<Document>> models = new ArrayList<>();
+
+        for (Long chatId : activity.keySet()) {
+            //Swapped out as a whole, so the messages recorded meanwhile go into a fresh entry.
+            ChatActivity chatActivity = activity.remove(chatId);
+            if (chatActivity == null || chatActivity.messages == 0) continue;
+
+            models.add(new UpdateOneModel<>(eq("_id", chatId), combine(
+                    inc("messages", chatActivity.messages),
+                    max("lastActiveAt", chatActivity.lastActiveAt))));
+        }
+
+        return models;
+    }
+
+    private CompletionStage<Void> writeActivity(List<WriteModel<Document>> models) {
+        if (models.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        return chats.bulkWrite(models, UNORDERED).handle((result, throwable) -> {
+            if (throwable != null) logger.error("Failed to write the activity of {} chats", models.size(), throwable);
+            return null;
+        });
+    }
+
+    /**
+     * Records a message of a chat into its' aggregated activity.
+     * <p>
+     * The activity is written into the chat's document only if the chat is recorded in the collection,
+     * so once the known chats were loaded by a warm-up, the activity of the other chats isn't aggregated at all
+     * (ex: the users who never sent {@code /start}).
+     *
+     * @param chatId The chat id.
+     * @param date   The message date in seconds since the epoch.
+     */
+    protected void recordActivity(long chatId, int date) {
+        if (warmedUp && !knownChats.contains(chatId)) return;
+
+        activity.compute(chatId, (id, chatActivity) -> {
+            if (chatActivity == null) chatActivity = new ChatActivity();
+            chatActivity.messages++;
+            chatActivity.lastActiveAt = Math.max(chatActivity.lastActiveAt, date);
+            return chatActivity;
+        });
+    }
+
+    /**
+     * Logs the newly discovered chats of a written batch.
+     *
+     * @param batch  The written batch.
+     * @param result The result of its' bulk write.
+     */
+    private void written(List<ChatWrite> batch, BulkWriteResult result, Map<Long, String> removedTypes,
+                         Set<Integer> failed, ChatStatistics statistics) {
+        if (!result.wasAcknowledged()) return;
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            ChatWrite write = batch.get(upsert.getIndex());
+            logger.info("Discovered new chat {}", write.description);
+            if (statistics != null) statistics.joined(write.type);
+        }
+
+        if (statistics == null || removedTypes.isEmpty()) return;
+        for (int index = 0; index < batch.size(); index++) {
+            ChatWrite write = batch.get(index);
+            String type = removedTypes.get(write.chatId);
+            //Counted as left only if it was recorded just before the batch.
+            if (write.description == null && type != null && !failed.contains(index)) statistics.left(type);
+        }
     }
 
     protected String getChatType(Chat chat) {
-        if (chat.isUserChat()) return "private";
-        else if (chat.isGroupChat()) return "group";
-        else if (chat.isSuperGroupChat()) return "supergroup";
-        else if (chat.isChannelChat()) return "channel";
-        else return "unknown";
+        return ChatUtilities.getChatType(chat).apiName;
     }
 
     protected String getChatDisplayName(Chat chat) {
@@ -42,40 +416,132 @@ public class ChatsTracker implements Handler<Update> {
         return name;
     }
 
-    protected boolean isNewChat(Chat chat) {
-        return chats.find(eq("_id", chat.getId())).first() == null;
-    }
-
     protected void recordChat(Chat chat) {
-        if (!isNewChat(chat)) return;
+        long chatId = chat.getId();
+        if (!knownChats.add(chatId)) return;
+
         String name = getChatDisplayName(chat);
-        chats.insertOne(new Document("_id", chat.getId())
-                .append("name", name)
-                .append("type", getChatType(chat))
-                .append("discoveredAt", (int) (System.currentTimeMillis() / 1000L)));
+        String type = getChatType(chat);
+        int discoveredAt = (int) (System.currentTimeMillis() / 1000L);
+        String description = "\"" + name + "\" (" + chatId + ") [" + type + "]";
 
-        logger.info("Discovered new chat \"{}\" ({}) [{}]", name, chat.getId(), getChatType(chat));
+        boolean removalQueued;
+        synchronized (queue) {
+            ChatWrite pending = queue.get(chatId);
+            removalQueued = pending != null && pending.description == null;
+        }
+
+        if (removalQueued) {
+            //Re-added after a queued removal, so it's recorded as a new chat.
+            enqueue(new ChatWrite(chatId, new ReplaceOneModel<>(eq("_id", chatId), new Document("_id", chatId)
+                    .append("name", name)
+                    .append("type", type)
+                    .append("discoveredAt", discoveredAt), REPLACE_UPSERT), description, type));
+            return;
+        }
+
+        enqueue(new ChatWrite(chatId, new UpdateOneModel<>(eq("_id", chatId), combine(
+                setOnInsert("name", name),
+                setOnInsert("type", type),
+                setOnInsert("discoveredAt", discoveredAt)), UPSERT), description, type));
+    }
+
+    /**
+     * Registers a listener to be notified of the chats migrated to a new id.
+     *
+     * @param listener The listener to register.
+     */
+    public void registerMigrationListener(MigrationListener listener) {
+        migrationListeners.add(listener);
     }
 
-    protected void migrateChat(Message message) {
-        Document document = chats.find(eq("_id", message.getMigrateFromChatId())).first();
+    /**
+     * Migrates a group into its' new supergroup id.
+     * <p>
+     * Telegram sends a service message into both the old group and the new supergroup, so it's idempotent:
+     * the document is upserted under the new id before the old one is deleted, and once the old one is gone
+     * the new one is only recorded if missing.
+     * <p>
+     * The migration listeners are notified first on the calling thread, so the chat's state is moved
+     * before the next messages of the supergroup, regardless of the document's migration.
+     *
+     * @param message The migration service message, from either chat.
+     * @return The completion of the migration, which never completes exceptionally (the failures are logged).
+     */
+    protected CompletionStage<Void> migrateChat(Message message) {
+        long fromChatId = message.getMigrateFromChatId() != null ? message.getMigrateFromChatId() : message.getChatId();
+        long toChatId = message.getMigrateToChatId() != null ? message.getMigrateToChatId() : message.getChatId();
 
-        if (document == null) {
-            recordChat(message.getChat());
-            return;
+        for (MigrationListener listener : migrationListeners) {
+            try {
+                listener.chatMigrated(fromChatId, toChatId);
+            } catch (RuntimeException e) {
+                logger.error("Failed to migrate the state of chat ({}) into ({})", fromChatId, toChatId, e);
+            }
         }
 
-        document.put("_id", message.getMigrateToChatId());
+        //Flushed first, so the old chat's queued writes are applied before it's read.
+        return flush().thenCompose(ignored -> chats.first(eq("_id", fromChatId))).thenCompose(document -> {
+            if (document == null) {
+                if (message.getChatId() == toChatId) recordChat(message.getChat());
+                return CompletableFuture.completedFuture(null);
+            }
+
+            String fromType = document.getString("type");
+            document.put("_id", toChatId);
+            document.put("type", ChatUtilities.ChatType.SUPERGROUP.apiName);
+            return chats.replaceOne(eq("_id", toChatId), document, REPLACE_UPSERT)
+                    .thenCompose(replaced -> chats.deleteOne(eq("_id", fromChatId)).thenAccept(deleted -> {
+                        ChatStatistics statistics = this.statistics;
+                        //Counted only by the migration which deleted the old chat, as it's repeated for both chats.
+                        if (statistics == null || fromType == null || deleted.getDeletedCount() == 0) return;
+                        //Already recorded under the new id, so the old chat is merged into it.
+                        if (replaced.getMatchedCount() > 0) statistics.merged(fromType);
+                        else statistics.changed(fromType, ChatUtilities.ChatType.SUPERGROUP.apiName);
+                    }))
+                    .thenRun(() -> migrated(fromChatId, toChatId));
+        }).exceptionally(throwable -> {
+            logger.error("Failed to migrate chat ({}) into ({})", fromChatId, toChatId, throwable);
+            return null;
+        });
+    }
 
-        chats.insertOne(document);
-        chats.deleteOne(eq("_id", message.getMigrateFromChatId()));
+    /**
+     * Moves the in-memory tracking of a chat into its' new id, once its' document was migrated.
+     *
+     * @param fromChatId The old chat id.
+     * @param toChatId   The new chat id.
+     */
+    private void migrated(long fromChatId, long toChatId) {
+        knownChats.remove(fromChatId);
+        knownChats.add(toChatId);
 
-        logger.info("Migrated chat from [group: {}] to [supergroup: {}]",
-                message.getMigrateFromChatId(), message.getMigrateToChatId());
+        //The activity aggregated for the old id is written into the new one.
+        ChatActivity chatActivity = activity.remove(fromChatId);
+        if (chatActivity != null) {
+            activity.compute(toChatId, (id, migrated) -> {
+                if (migrated == null) return chatActivity;
+                migrated.messages += chatActivity.messages;
+                migrated.lastActiveAt = Math.max(migrated.lastActiveAt, chatActivity.lastActiveAt);
+                return migrated;
+            });
+        }
+
+        logger.info("Migrated chat from [group: {}] to [supergroup: {}]", fromChatId, toChatId);
     }
 
     protected void removeChat(Chat chat) {
-        chats.deleteOne(eq("_id", chat.getId()));
+        removeChat(chat.getId());
+    }
+
+    /**
+     * Removes a chat which the bot is no longer a member of, ex: blocked by the user.
+     *
+     * @param chatId The chat id.
+     */
+    public void removeChat(long chatId) {
+        knownChats.remove(chatId);
+        enqueue(new ChatWrite(chatId, new DeleteOneModel<>(eq("_id", chatId)), null, null));
     }
 
     @Override
@@ -84,8 +550,8 @@ public class ChatsTracker implements Handler<Update> {
 
         Message message = update.getMessage();
 
-        if (message.isUserMessage()) {
-            if (message.getText().equals("/start"))
+        if (ChatUtilities.getChatType(message) == ChatUtilities.ChatType.USER) {
+            if ("/start".equals(message.getText()))
                 recordChat(message.getChat());
         } else {
             if (message.getGroupchatCreated() != null && message.getGroupchatCreated())
@@ -100,11 +566,87 @@ public class ChatsTracker implements Handler<Update> {
             } else if (message.getLeftChatMember() != null) {
                 if (Objects.equals(message.getLeftChatMember().getUserName(), botUsername))
                     removeChat(message.getChat());
-            } else if (message.getMigrateFromChatId() != null) {
+            } else if (message.getMigrateFromChatId() != null || message.getMigrateToChatId() != null) {
                 migrateChat(message);
             }
         }
 
+        //After the chat is recorded, so the message which added it is counted.
+        if (message.getDate() != null) recordActivity(message.getChatId(), message.getDate());
+
         return false;
     }
+
+    /**
+     * Stops the background flushes, and writes the queued writes.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS))
+                logger.warn("The chats tracker flushing thread didn't terminate in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            flush().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("The queued chats tracking changes weren't written in time", e);
+        }
+    }
+
+    /**
+     * Notified of the chats migrated to a new id (groups upgraded to supergroups), to move their state.
+     */
+    @FunctionalInterface
+    public interface MigrationListener {
+        /**
+         * Called when a chat is migrated (before its' document is moved), or again when its' migration is repeated.
+         *
+         * @param fromChatId The old chat id.
+         * @param toChatId   The new chat id.
+         */
+        void chatMigrated(long fromChatId, long toChatId);
+    }
+
+    /**
+     * The aggregated activity of a chat since the last flush, guarded by the activity map.
+     */
+    protected static final class ChatActivity {
+        long messages;
+
+        /**
+         * The date of the chat's latest message in seconds since the epoch.
+         */
+        int lastActiveAt;
+    }
+
+    /**
+     * A queued write of a chat.
+     */
+    protected static final class ChatWrite {
+        final long chatId;
+        final WriteModel<Document> model;
+
+        /**
+         * The description of the chat for the discovery log, {@code null} for a removal.
+         */
+        final String description;
+
+        /**
+         * The API name of the chat type, {@code null} for a removal.
+         */
+        final String type;
+
+        ChatWrite(long chatId, WriteModel<Document> model, String description, String type) {
+            this.chatId = chatId;
+            this.model = model;
+            this.description = description;
+            this.type = type;
+        }
+    }
 }
@@ -0,0 +1,34 @@
+package com.github.rami_sabbagh.telegram.alice_framework.mongodb.commands;
+
+import java.util.Collection;
+
+/**
+ * Notified of the changes made to the admins collection, to keep the in-memory state derived from it updated.
+ */
+public interface AdminsListener {
+
+    /**
+     * Called after a user got promoted into an admin.
+     *
+     * @param userId     The id of the promoted user.
+     * @param promotedBy The id of the admin who promoted the user.
+     */
+    void adminPromoted(int userId, int promotedBy);
+
+    /**
+     * Called after an admin got demoted, and their sub-admins were transferred.
+     *
+     * @param userId    The id of the demoted admin.
+     * @param demotedBy The id of the admin who demoted them, and took over their sub-admins.
+     */
+    void adminDemoted(int userId, int demotedBy);
+
+    /**
+     * Called after a group of admins got reassigned to be sub-admins of another admin.
+     *
+     * @param userIds    The ids of the reassigned admins.
+     * @param promotedBy The id of the admin they were reassigned to.
+     */
+    default void adminsReassigned(Collection<Integer> userIds, int promotedBy) {
+    }
+}
@@ -4,6 +4,9 @@ import com.github.rami_sabbagh.telegram.alice_framework.commands.Command;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.Locality;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.ParsedCommand;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.Privacy;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.AdminRepository;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.AsyncCollection;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.BlockingCollection;
 import com.github.rami_sabbagh.telegram.alice_framework.utilities.SilentExecutor;
 import com.mongodb.client.MongoCollection;
 import org.bson.Document;
@@ -14,14 +17,14 @@ import org.telegram.telegrambots.meta.api.objects.Chat;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.User;
 
-import static com.mongodb.client.model.Filters.eq;
-import static com.mongodb.client.model.Updates.set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 public class DemoteCommand extends Command {
 
     private static final Logger logger = LoggerFactory.getLogger(DemoteCommand.class);
 
-    protected final MongoCollection<Document> admins;
+    protected final AdminRepository admins;
     protected final SilentExecutor silent;
     protected final int creatorID;
 
@@ -30,6 +33,22 @@ public class DemoteCommand extends Command {
     }
 
     public DemoteCommand(MongoCollection<Document> admins, SilentExecutor silent, int creatorID, String name, String description) {
+        this(new BlockingCollection(admins), silent, creatorID, name, description);
+    }
+
+    public DemoteCommand(AsyncCollection admins, SilentExecutor silent, int creatorId) {
+        this(admins, silent, creatorId, "demote", "Demote a bot administrator.");
+    }
+
+    public DemoteCommand(AsyncCollection admins, SilentExecutor silent, int creatorID, String name, String description) {
+        this(new AdminRepository(admins), silent, creatorID, name, description);
+    }
+
+    public DemoteCommand(AdminRepository admins, SilentExecutor silent, int creatorId) {
+        this(admins, silent, creatorId, "demote", "Demote a bot administrator.");
+    }
+
+    public DemoteCommand(AdminRepository admins, SilentExecutor silent, int creatorID, String name, String description) {
         super(name, description, Locality.USER, Privacy.ADMIN);
         this.admins = admins;
         this.silent = silent;
@@ -47,6 +66,15 @@ public class DemoteCommand extends Command {
         return message.getFrom().getId() == creatorID;
     }
 
+    /**
+     * Registers a listener to be notified of the users demoted by the command.
+     *
+     * @param listener The listener to register.
+     */
+    public void registerAdminsListener(AdminsListener listener) {
+        admins.registerAdminsListener(listener);
+    }
+
     @Override
     public void action(Message message, ParsedCommand parsedCommand) {
 
@@ -92,59 +120,66 @@ public class DemoteCommand extends Command {
             return;
         }
 
-        Document profile = admins.find(eq("_id", toDemote)).first();
-        if (profile == null) {
-            silent.compose().text("The user is already not an admin to be demoted 😅")
-                    .replyToOnlyInGroup(message).send();
-            return;
-        }
-
-        Integer promotedBy = profile.getInteger("promotedBy");
-        if (promotedBy == null && !isOwner(message)) {
-            silent.compose().text("Only the bot's owner can demote this user ⚠")
-                    .replyToOnlyInGroup(message).send();
-            return;
-        }
+        admins.find(toDemote).thenCompose(profile -> {
+            if (profile == null) {
+                silent.compose().text("The user is already not an admin to be demoted 😅")
+                        .replyToOnlyInGroup(message).send();
+                return CompletableFuture.completedFuture(null);
+            }
 
-        if (promotedBy != null && !promotedBy.equals(message.getFrom().getId()) && !isOwner(message)) {
-            String bossName;
-            Chat bossChat = silent.execute(new GetChat().setChatId(message.getFrom().getId().longValue()));
-            if (bossChat == null)
-                bossName = "{User #" + message.getFrom().getId() + "}";
-            else if (bossChat.getUserName() != null)
-                bossName = "@" + bossChat.getUserName();
-            else {
-                bossName = bossChat.getFirstName();
-                if (bossChat.getLastName() != null) bossName += " " + bossChat.getLastName();
-                bossName += " #" + message.getFrom().getId();
+            Integer promotedBy = profile.getInteger("promotedBy");
+            if (promotedBy == null && !isOwner(message)) {
+                silent.compose().text("Only the bot's owner can demote this user ⚠")
+                        .replyToOnlyInGroup(message).send();
+                return CompletableFuture.completedFuture(null);
             }
 
-            silent.compose().text("This user can be only demoted by " + bossName + " or by the owner ⚠")
-                    .replyToOnlyInGroup(message).send();
-            return;
-        }
+            if (promotedBy != null && !promotedBy.equals(message.getFrom().getId()) && !isOwner(message)) {
+                silent.compose().text("This user can be only demoted by " + getBossName(message) + " or by the owner ⚠")
+                        .replyToOnlyInGroup(message).send();
+                return CompletableFuture.completedFuture(null);
+            }
 
-        boolean success = admins.deleteOne(eq("_id", toDemote)).wasAcknowledged();
-        if (!success) {
-            logger.error("Failed to demote user ({}) under a request by ({})", toDemote, message.getFrom().getId());
+            return demote(message, toDemote);
+        }).exceptionally(throwable -> {
+            logger.error("Failed to demote user ({}) under a request by ({})", toDemote, message.getFrom().getId(), throwable);
             silent.compose().text("An error occurred while demoting ⚠")
                     .replyToOnlyInGroup(message).send();
-            return;
-        }
+            return null;
+        });
+    }
 
-        success = admins.updateMany(eq("promotedBy", toDemote),
-                set("promotedBy", message.getFrom().getId())).wasAcknowledged();
+    private String getBossName(Message message) {
+        Chat bossChat = silent.execute(new GetChat().setChatId(message.getFrom().getId().longValue()));
+        if (bossChat == null) return "{User #" + message.getFrom().getId() + "}";
+        if (bossChat.getUserName() != null) return "@" + bossChat.getUserName();
 
-        if (!success) {
-            logger.error("Failed to transfer sub-admins from ({}) to ({})", toDemote, message.getFrom().getId());
-            silent.compose().text("An error occurred while transferring sub-admins ⚠")
-                    .replyToOnlyInGroup(message).send();
-            return;
-        }
+        String bossName = bossChat.getFirstName();
+        if (bossChat.getLastName() != null) bossName += " " + bossChat.getLastName();
+        return bossName + " #" + message.getFrom().getId();
+    }
 
-        logger.info("User ({}) got demoted into a normal user by ({})", toDemote, message.getFrom().getId());
-        silent.compose().text("Demoted successfully ✅")
-                .replyToOnlyInGroup(message).send();
+    /**
+     * Demotes an admin, and transfers their sub-admins into the demoter.
+     *
+     * @param message  The demote command message.
+     * @param toDemote The id of the admin to demote.
+     * @return The completion of the demotion.
+     */
+    private CompletionStage<Void> demote(Message message, int toDemote) {
+        int demotedBy = message.getFrom().getId();
 
+        return admins.demote(toDemote, demotedBy).thenAccept(demoted -> {
+            if (!demoted) {
+                //Demoted by another admin meanwhile.
+                silent.compose().text("The user is already not an admin to be demoted 😅")
+                        .replyToOnlyInGroup(message).send();
+                return;
+            }
+
+            logger.info("User ({}) got demoted into a normal user by ({})", toDemote, demotedBy);
+            silent.compose().text("Demoted successfully ✅")
+                    .replyToOnlyInGroup(message).send();
+        });
     }
 }
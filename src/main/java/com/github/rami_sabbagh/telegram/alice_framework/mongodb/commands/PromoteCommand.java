@@ -4,6 +4,9 @@ import com.github.rami_sabbagh.telegram.alice_framework.commands.Command;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.Locality;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.ParsedCommand;
 import com.github.rami_sabbagh.telegram.alice_framework.commands.Privacy;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.AdminRepository;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.AsyncCollection;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.BlockingCollection;
 import com.github.rami_sabbagh.telegram.alice_framework.utilities.SilentExecutor;
 import com.mongodb.client.MongoCollection;
 import org.bson.Document;
@@ -14,13 +17,11 @@ import org.telegram.telegrambots.meta.api.objects.Chat;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.User;
 
-import static com.mongodb.client.model.Filters.eq;
-
 public class PromoteCommand extends Command {
 
     private static final Logger logger = LoggerFactory.getLogger(PromoteCommand.class);
 
-    protected final MongoCollection<Document> admins;
+    protected final AdminRepository admins;
     protected final SilentExecutor silent;
     protected final int creatorID;
 
@@ -29,12 +30,37 @@ public class PromoteCommand extends Command {
     }
 
     public PromoteCommand(MongoCollection<Document> admins, SilentExecutor silent, int creatorID, String name, String description) {
+        this(new BlockingCollection(admins), silent, creatorID, name, description);
+    }
+
+    public PromoteCommand(AsyncCollection admins, SilentExecutor silent, int creatorId) {
+        this(admins, silent, creatorId, "promote", "Promote a user to be an admin of the bot.");
+    }
+
+    public PromoteCommand(AsyncCollection admins, SilentExecutor silent, int creatorID, String name, String description) {
+        this(new AdminRepository(admins), silent, creatorID, name, description);
+    }
+
+    public PromoteCommand(AdminRepository admins, SilentExecutor silent, int creatorId) {
+        this(admins, silent, creatorId, "promote", "Promote a user to be an admin of the bot.");
+    }
+
+    public PromoteCommand(AdminRepository admins, SilentExecutor silent, int creatorID, String name, String description) {
         super(name, description, Locality.USER, Privacy.ADMIN);
         this.admins = admins;
         this.silent = silent;
         this.creatorID = creatorID;
     }
 
+    /**
+     * Registers a listener to be notified of the users promoted by the command.
+     *
+     * @param listener The listener to register.
+     */
+    public void registerAdminsListener(AdminsListener listener) {
+        admins.registerAdminsListener(listener);
+    }
+
     @Override
     public void action(Message message, ParsedCommand parsedCommand) {
         if ((!message.isReply() || message.getReplyToMessage().getForwardFrom() == null) && parsedCommand.parameters.isBlank()) {
@@ -79,22 +105,20 @@ public class PromoteCommand extends Command {
             return;
         }
 
-        if (admins.find(eq("_id", toPromote)).first() != null) {
-            silent.compose().text("The user is already an admin 🙃")
-                    .replyToOnlyInGroup(message).send();
-            return;
-        }
-
-        boolean success = admins.insertOne(new Document("_id", toPromote)
-                .append("promotedBy", message.getFrom().getId())
-                .append("promotedAt", (int) (System.currentTimeMillis() / 1000)))
-                .wasAcknowledged();
-
-        if (success) logger.info("User ({}) got promoted into an admin by ({})", toPromote, message.getFrom().getId());
-        else
-            logger.error("Failed to promote user ({}) into an admin under a request by ({})", toPromote, message.getFrom().getId());
-
-        silent.compose().text(success ? "Promoted to an admin successfully ✅" : "An error occurred while promoting ⚠")
-                .replyToOnlyInGroup(message).send();
+        int promotedBy = message.getFrom().getId();
+        admins.promote(toPromote, promotedBy).whenComplete((promoted, throwable) -> {
+            if (throwable != null) {
+                logger.error("Failed to promote user ({}) into an admin under a request by ({})", toPromote, promotedBy, throwable);
+                silent.compose().text("An error occurred while promoting ⚠")
+                        .replyToOnlyInGroup(message).send();
+            } else if (!promoted) {
+                silent.compose().text("The user is already an admin 🙃")
+                        .replyToOnlyInGroup(message).send();
+            } else {
+                logger.info("User ({}) got promoted into an admin by ({})", toPromote, promotedBy);
+                silent.compose().text("Promoted to an admin successfully ✅")
+                        .replyToOnlyInGroup(message).send();
+            }
+        });
     }
 }
@@ -0,0 +1,59 @@
+package com.github.rami_sabbagh.telegram.alice_framework.mongodb.commands;
+
+import com.github.rami_sabbagh.telegram.alice_framework.commands.Command;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.Locality;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.ParsedCommand;
+import com.github.rami_sabbagh.telegram.alice_framework.commands.Privacy;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.ChatStatistics;
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.ChatUtilities.ChatType;
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.SilentExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+/**
+ * Reports the chats statistics of the bot from their pre-computed counters.
+ */
+public class StatsCommand extends Command {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatsCommand.class);
+
+    /**
+     * The number of days to report the joined and left chats of.
+     */
+    private static final int DAYS = 7;
+
+    protected final ChatStatistics statistics;
+    protected final SilentExecutor silent;
+
+    public StatsCommand(ChatStatistics statistics, SilentExecutor silent) {
+        this(statistics, silent, "stats", "Show the chats statistics of the bot.");
+    }
+
+    public StatsCommand(ChatStatistics statistics, SilentExecutor silent, String name, String description) {
+        super(name, description, Locality.USER, Privacy.ADMIN);
+        this.statistics = statistics;
+        this.silent = silent;
+    }
+
+    @Override
+    public void action(Message message, ParsedCommand parsedCommand) {
+        statistics.read(DAYS).whenComplete((snapshot, throwable) -> {
+            if (throwable != null) {
+                logger.error("Failed to read the chats statistics under a request by ({})", message.getFrom().getId(), throwable);
+                silent.compose().text("An error occurred while reading the statistics ⚠")
+                        .replyToOnlyInGroup(message).send();
+                return;
+            }
+
+            silent.compose().text("📊 Chats: " + snapshot.total() + "\n" +
+                    "👤 Users: " + snapshot.chats.get(ChatType.USER) + "\n" +
+                    "👥 Groups: " + snapshot.chats.get(ChatType.GROUP) + "\n" +
+                    "👥 Supergroups: " + snapshot.chats.get(ChatType.SUPERGROUP) + "\n" +
+                    "📢 Channels: " + snapshot.chats.get(ChatType.CHANNEL) + "\n\n" +
+                    "Today: +" + snapshot.joinedToday + " joined, -" + snapshot.leftToday + " left\n" +
+                    "Last " + snapshot.days + " days: +" + snapshot.joined + " joined, -" + snapshot.left + " left")
+                    .replyToOnlyInGroup(message).send();
+        });
+    }
+}
@@ -1,23 +1,54 @@
 package com.github.rami_sabbagh.telegram.alice_framework.mongodb.commands.authorizers;
 
 import com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.AuthorizeOwner;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.AsyncCollection;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.BlockingCollection;
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.commands.AdminsListener;
 import com.github.rami_sabbagh.telegram.alice_framework.utilities.SilentExecutor;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
 import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.api.objects.Message;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * A {@code StandardAuthorizer} which looks up the bot admins from a MongoDB database, and the bot owner from a constant userId.
  * <p>
  * Each admin is stored as a document with a single field: <i>_id</i> which is the user id as a number.
+ * <p>
+ * Authorizers answer synchronously, so the lookups wait for the collection's results.
+ * Unless the admins were warmed up into memory, in which case they're answered from memory, and kept updated
+ * by the admins listener notifications (so only the changes made by this instance are seen).
  */
-public class AuthorizeWithMongoDB extends AuthorizeOwner {
+public class AuthorizeWithMongoDB extends AuthorizeOwner implements AdminsListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthorizeWithMongoDB.class);
+
+    /**
+     * The indexes of the admins collection, for looking up the sub-admins of an admin.
+     */
+    public static final List<IndexModel> INDEXES = List.of(new IndexModel(Indexes.ascending("promotedBy")));
 
     /**
      * A mongoDB collection for storing the admins list.
      */
-    protected final MongoCollection<Document> admins;
+    protected final AsyncCollection admins;
+
+    /**
+     * The ids of the admins, {@code null} unless warmed up.
+     */
+    protected volatile Set<Integer> cachedAdmins;
 
     /**
      * Creates an authorizer which uses a MongoDB database to lookup admins.
@@ -27,12 +58,78 @@ public class AuthorizeWithMongoDB extends AuthorizeOwner {
      * @param admins  A mongoDB collection containing the admins list.
      */
     public AuthorizeWithMongoDB(SilentExecutor silent, int ownerId, MongoCollection<Document> admins) {
+        this(silent, ownerId, new BlockingCollection(admins));
+    }
+
+    /**
+     * Creates an authorizer which uses a MongoDB database to lookup admins.
+     *
+     * @param silent  The silent executor to use for requesting more information about the users.
+     * @param ownerId The Telegram userId of the bot's owner.
+     * @param admins  A mongoDB collection containing the admins list.
+     */
+    public AuthorizeWithMongoDB(SilentExecutor silent, int ownerId, AsyncCollection admins) {
         super(silent, ownerId);
         this.admins = admins;
     }
 
+    /**
+     * Creates the indexes of the admins collection, if missing.
+     *
+     * @return The completion of the indexes creation.
+     */
+    public CompletionStage<Void> ensureIndexes() {
+        return admins.createIndexes(INDEXES).thenAccept(names -> logger.debug("Ensured the admins indexes {}", names));
+    }
+
+    /**
+     * Loads the ids of the admins into memory, so the admin checks don't query the database anymore.
+     *
+     * @return The number of the loaded admins.
+     */
+    public CompletionStage<Integer> warmUp() {
+        return admins.find(new Document(), Projections.include("_id")).thenApply(documents -> {
+            Set<Integer> loaded = ConcurrentHashMap.newKeySet(documents.size());
+            for (Document document : documents) loaded.add(document.getInteger("_id"));
+            cachedAdmins = loaded;
+            logger.info("Loaded {} admins", loaded.size());
+            return loaded.size();
+        });
+    }
+
+    @Override
+    public void adminPromoted(int userId, int promotedBy) {
+        Set<Integer> cached = cachedAdmins;
+        if (cached != null) cached.add(userId);
+    }
+
+    @Override
+    public void adminDemoted(int userId, int demotedBy) {
+        Set<Integer> cached = cachedAdmins;
+        if (cached != null) cached.remove(userId);
+    }
+
     @Override
     public boolean isAdmin(Message message) {
-        return admins.find(Filters.eq("_id", message.getFrom().getId())).first() != null;
+        Set<Integer> cached = cachedAdmins;
+        if (cached != null) return cached.contains(message.getFrom().getId());
+        return admins.first(Filters.eq("_id", message.getFrom().getId())).toCompletableFuture().join() != null;
+    }
+
+    @Override
+    protected Set<Integer> lookupAdmins(Collection<Message> messages) {
+        Set<Integer> userIds = new HashSet<>();
+        for (Message message : messages) userIds.add(message.getFrom().getId());
+
+        Set<Integer> cached = cachedAdmins;
+        if (cached != null) {
+            userIds.retainAll(cached);
+            return userIds;
+        }
+
+        Set<Integer> found = new HashSet<>();
+        for (Document document : admins.find(Filters.in("_id", userIds), Projections.include("_id")).toCompletableFuture().join())
+            found.add(document.getInteger("_id"));
+        return found;
     }
 }
@@ -0,0 +1,200 @@
+package com.github.rami_sabbagh.telegram.alice_framework.mongodb.reactive;
+
+import com.github.rami_sabbagh.telegram.alice_framework.mongodb.AsyncCollection;
+import com.mongodb.MongoNamespace;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * An {@code AsyncCollection} over the reactive streams MongoDB driver, which doesn't block any thread
+ * while waiting for the database.
+ * <p>
+ * The operations complete on the driver's I/O threads unless a callbacks executor is given, which the callbacks
+ * doing any blocking work (ex: sending a message with the sync bot methods) have to run on.
+ */
+public class ReactiveCollection implements AsyncCollection {
+
+    /**
+     * The reactive streams collection.
+     */
+    public final MongoCollection<Document> collection;
+
+    /**
+     * The executor the operations are completed on.
+     */
+    protected final Executor callbacks;
+
+    /**
+     * Creates a collection which completes the operations on the driver's I/O threads.
+     *
+     * @param collection The reactive streams collection.
+     */
+    public ReactiveCollection(MongoCollection<Document> collection) {
+        this(collection, Runnable::run);
+    }
+
+    /**
+     * Creates a collection which completes the operations on an executor.
+     *
+     * @param collection The reactive streams collection.
+     * @param callbacks  The executor to complete the operations on, so their callbacks can block.
+     */
+    public ReactiveCollection(MongoCollection<Document> collection, Executor callbacks) {
+        this.collection = collection;
+        this.callbacks = callbacks;
+    }
+
+    /**
+     * Subscribes to a publisher of a single result.
+     *
+     * @param publisher The publisher.
+     * @param callbacks The executor to complete the result on.
+     * @param <T>       The result type.
+     * @return The result, completed with {@code null} if the publisher completed empty.
+     */
+    public static <T> CompletionStage<T> single(Publisher<T> publisher, Executor callbacks) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            private T result;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(T item) {
+                result = item;
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                callbacks.execute(() -> future.completeExceptionally(throwable));
+            }
+
+            @Override
+            public void onComplete() {
+                callbacks.execute(() -> future.complete(result));
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Subscribes to a publisher, collecting all of its' results.
+     *
+     * @param publisher The publisher.
+     * @param callbacks The executor to complete the results on.
+     * @param <T>       The results type.
+     * @return The results.
+     */
+    public static <T> CompletionStage<List<T>> collect(Publisher<T> publisher, Executor callbacks) {
+        CompletableFuture<List<T>> future = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            private final List<T> results = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T item) {
+                results.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                callbacks.execute(() -> future.completeExceptionally(throwable));
+            }
+
+            @Override
+            public void onComplete() {
+                callbacks.execute(() -> future.complete(results));
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public MongoNamespace getNamespace() {
+        return collection.getNamespace();
+    }
+
+    @Override
+    public CompletionStage<Document> first(Bson filter) {
+        return single(collection.find(filter).first(), callbacks);
+    }
+
+    @Override
+    public CompletionStage<List<Document>> find(Bson filter, Bson projection) {
+        FindPublisher<Document> documents = collection.find(filter);
+        if (projection != null) documents = documents.projection(projection);
+        return collect(documents, callbacks);
+    }
+
+    @Override
+    public CompletionStage<List<Document>> aggregate(List<? extends Bson> pipeline) {
+        return collect(collection.aggregate(pipeline), callbacks);
+    }
+
+    @Override
+    public CompletionStage<Void> aggregateToCollection(List<? extends Bson> pipeline) {
+        return single(collection.aggregate(pipeline).toCollection(), callbacks);
+    }
+
+    @Override
+    public CompletionStage<InsertOneResult> insertOne(Document document) {
+        return single(collection.insertOne(document), callbacks);
+    }
+
+    @Override
+    public CompletionStage<UpdateResult> replaceOne(Bson filter, Document replacement, ReplaceOptions options) {
+        return single(collection.replaceOne(filter, replacement, options), callbacks);
+    }
+
+    @Override
+    public CompletionStage<UpdateResult> updateOne(Bson filter, Bson update, UpdateOptions options) {
+        return single(collection.updateOne(filter, update, options), callbacks);
+    }
+
+    @Override
+    public CompletionStage<UpdateResult> updateMany(Bson filter, Bson update) {
+        return single(collection.updateMany(filter, update), callbacks);
+    }
+
+    @Override
+    public CompletionStage<DeleteResult> deleteOne(Bson filter) {
+        return single(collection.deleteOne(filter), callbacks);
+    }
+
+    @Override
+    public CompletionStage<BulkWriteResult> bulkWrite(List<? extends WriteModel<Document>> requests, BulkWriteOptions options) {
+        return single(collection.bulkWrite(requests, options), callbacks);
+    }
+
+    @Override
+    public CompletionStage<List<String>> createIndexes(List<IndexModel> indexes) {
+        return collect(collection.createIndexes(indexes), callbacks);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * The framework's MongoDB components over the reactive streams driver, which don't block threads waiting for the database.
+ */
+package com.github.rami_sabbagh.telegram.alice_framework.mongodb.reactive;
\ No newline at end of file
@@ -0,0 +1,597 @@
+package com.github.rami_sabbagh.telegram.alice_framework.redis.interactivity;
+
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivityHandler;
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivityMetrics;
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivitySession;
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivityState;
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.ConcurrentLongSet;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanIterator;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The redis storage layout shared by the redis InteractivityHandlers.
+ * <p>
+ * The session of each chat is stored in a single hash, which has the fields {@code listenerId} and {@code messageId},
+ * and a {@code data:}-prefixed field for each entry of the state data. So a session is read with a single
+ * {@code HGETALL}, replaced atomically with a single script call, and updated by writing only the modified fields.
+ * The sessions bound to a bot message are stored the same way, keyed by the chat id and the message id
+ * ({@code chatId@messageId}).
+ * <p>
+ * Each write of a session gives it a new version, which is unique across the sessions (so a recreated session
+ * never reuses a version). The updates and removals based on a loaded session are rejected if its' version changed
+ * meanwhile, so the first of two instances processing the messages of a chat concurrently wins.
+ * <p>
+ * The sessions of listeners with a timeout have a {@code :timeout}-suffixed key besides their hash,
+ * which expires when the session does, so the hash is still available for delivering the expiry to the listener.
+ * Their hash also has an {@code expiresAt} field, so an expired session which wasn't deleted yet is not loaded.
+ * <p>
+ * The sessions are indexed by their expiry time in a sorted set, so the active sessions are counted
+ * without scanning, including the ones which expired without being claimed.
+ */
+public abstract class AbstractRedisInteractivityHandler extends InteractivityHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractRedisInteractivityHandler.class);
+
+    /**
+     * The extra time the hash of an expiring session is kept for after its' timeout,
+     * so its' expiry can be claimed and delivered to the listener, in seconds.
+     */
+    protected static final long EXPIRY_GRACE = 3600;
+
+    /**
+     * Sets the timeout of a session: {@code KEYS[1]} is the hash, {@code KEYS[2]} is the timeout key,
+     * and {@code timeout} is the number of seconds or {@code 0} for no timeout.
+     */
+    private static final String SET_TIMEOUT = "local function setTimeout(timeout) "
+            + "if timeout > 0 then "
+            + "redis.call('SET', KEYS[2], '', 'EX', timeout) "
+            + "redis.call('EXPIRE', KEYS[1], timeout + " + EXPIRY_GRACE + ") "
+            + "else redis.call('DEL', KEYS[2]) end "
+            + "end ";
+
+    /**
+     * Publishes the key of a written session into an invalidation channel: {@code KEYS[1]} is the hash,
+     * and {@code channel} is the channel name or an empty string to skip publishing.
+     */
+    protected static final String INVALIDATE = "local function invalidate(channel) "
+            + "if channel ~= '' then redis.call('PUBLISH', channel, KEYS[1]) end "
+            + "end ";
+
+    /**
+     * Indexes a written session by its' expiry time: {@code KEYS[1]} is the hash, and {@code KEYS[4]} is the index,
+     * a sorted set of the sessions keys scored by their {@code expiresAt} field, or {@code +inf} without a timeout.
+     */
+    private static final String INDEX = "local function index() "
+            + "redis.call('ZADD', KEYS[4], redis.call('HGET', KEYS[1], 'expiresAt') or '+inf', KEYS[1]) "
+            + "end ";
+
+    /**
+     * Checks the version of a session: {@code KEYS[1]} is the hash, and {@code expected} is the version
+     * the write is based on, or {@code '0'} for an unconditional write.
+     */
+    private static final String CHECK_VERSION = "local function isStale(expected) "
+            + "return expected ~= '0' and redis.call('HGET', KEYS[1], 'version') ~= expected "
+            + "end ";
+
+    /**
+     * Replaces the whole hash of a session with a new version: {@code KEYS[1]} is the hash, {@code KEYS[2]} is
+     * the timeout key, {@code KEYS[3]} is the versions counter, {@code KEYS[4]} is the sessions index,
+     * {@code ARGV[1]} is the timeout, {@code ARGV[2]} is the invalidation channel, followed by the fields and values
+     * of the hash.
+     * <p>
+     * Returns the new version of the session, which is unique across all the sessions.
+     */
+    protected static final String STORE_SCRIPT = SET_TIMEOUT + INVALIDATE + INDEX
+            + "local version = redis.call('INCR', KEYS[3]) "
+            + "redis.call('DEL', KEYS[1]) "
+            + "redis.call('HSET', KEYS[1], 'version', version, unpack(ARGV, 3)) "
+            + "setTimeout(tonumber(ARGV[1])) "
+            + "index() "
+            + "invalidate(ARGV[2]) "
+            + "return version";
+
+    /**
+     * Updates some fields of an existing session hash, and refreshes its' timeout: {@code KEYS[1]} is the hash,
+     * {@code KEYS[2]} is the timeout key, {@code KEYS[3]} is the versions counter, {@code KEYS[4]} is the sessions
+     * index, {@code ARGV[1]} is the timeout, {@code ARGV[2]} is the invalidation channel, {@code ARGV[3]} is the expected version, {@code ARGV[4]} is
+     * the number of fields to set, followed by their fields and values, then by the fields to delete.
+     * <p>
+     * Returns the version of the session after the update, {@code 0} if the session no longer exists (so a
+     * concurrently ended session is not resurrected partially), or {@code -1} if the session has a different version
+     * than the expected one (so the first writer wins).
+     */
+    protected static final String UPDATE_SCRIPT = SET_TIMEOUT + INVALIDATE + INDEX + CHECK_VERSION
+            + "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end "
+            + "if isStale(ARGV[3]) then return -1 end "
+            + "local last = 4 + 2 * tonumber(ARGV[4]) "
+            + "local version = tonumber(redis.call('HGET', KEYS[1], 'version') or '0') "
+            + "if last > 4 or #ARGV > last then "
+            + "version = redis.call('INCR', KEYS[3]) "
+            + "redis.call('HSET', KEYS[1], 'version', version) "
+            + "if last > 4 then redis.call('HSET', KEYS[1], unpack(ARGV, 5, last)) end "
+            + "if #ARGV > last then redis.call('HDEL', KEYS[1], unpack(ARGV, last + 1)) end "
+            + "invalidate(ARGV[2]) "
+            + "end "
+            + "local timeout = tonumber(ARGV[1]) "
+            + "if timeout > 0 then setTimeout(timeout) index() end "
+            + "return version";
+
+    /**
+     * Deletes a session: {@code KEYS[1]} is the hash, {@code KEYS[2]} is the timeout key, {@code KEYS[4]} is
+     * the sessions index, {@code ARGV[1]} is the expected version, and {@code ARGV[2]} is the invalidation channel.
+     * <p>
+     * Returns {@code 1} if deleted, {@code 0} if the session doesn't exist,
+     * or {@code -1} if the session has a different version than the expected one.
+     */
+    protected static final String REMOVE_SCRIPT = INVALIDATE + CHECK_VERSION
+            + "if isStale(ARGV[1]) then "
+            + "return redis.call('EXISTS', KEYS[1]) == 1 and -1 or 0 "
+            + "end "
+            + "local deleted = redis.call('DEL', KEYS[1], KEYS[2]) "
+            + "redis.call('ZREM', KEYS[4], KEYS[1]) "
+            + "invalidate(ARGV[2]) "
+            + "return deleted > 0 and 1 or 0";
+
+    /**
+     * Claims an expired session, by reading and deleting its' hash unless its' timeout was refreshed meanwhile:
+     * {@code KEYS[1]} is the hash, {@code KEYS[2]} is the timeout key, {@code KEYS[4]} is the sessions index,
+     * and {@code ARGV[1]} is the invalidation channel.
+     * <p>
+     * Returns the fields and values of the hash, or an empty list if it was already claimed or refreshed,
+     * so only a single instance of the bot delivers each expiry.
+     */
+    protected static final String CLAIM_SCRIPT = INVALIDATE
+            + "if redis.call('EXISTS', KEYS[2]) == 1 then return {} end "
+            + "local hash = redis.call('HGETALL', KEYS[1]) "
+            + "redis.call('DEL', KEYS[1]) "
+            + "redis.call('ZREM', KEYS[4], KEYS[1]) "
+            + "invalidate(ARGV[1]) "
+            + "return hash";
+
+    protected static final String TIMEOUT_SUFFIX = ":timeout";
+
+    protected static final String LISTENER_ID_FIELD = "listenerId";
+    protected static final String MESSAGE_ID_FIELD = "messageId";
+    protected static final String VERSION_FIELD = "version";
+    protected static final String EXPIRES_AT_FIELD = "expiresAt";
+    protected static final String DATA_PREFIX = "data:";
+
+    protected final String keyPrefix;
+
+    /**
+     * The connection subscribed to the keyspace notifications of the sessions, {@code null} when not subscribed.
+     */
+    protected StatefulRedisPubSubConnection<String, String> keyspaceConnection;
+
+    /**
+     * The connection used for claiming the expired sessions, {@code null} when the expiry is not delivered.
+     */
+    protected StatefulRedisConnection<String, String> expiryConnection;
+
+    /**
+     * Delivers the expired sessions to their listeners, {@code null} when the expiry is not delivered.
+     */
+    protected ExecutorService expiryExecutor;
+
+    /**
+     * The chats with an active session, kept in sync with the keyspace notifications once subscribed.
+     */
+    protected final ConcurrentLongSet trackedChats = new ConcurrentLongSet();
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param namespace The namespace to prefix the redis keys with.
+     */
+    protected AbstractRedisInteractivityHandler(String namespace) {
+        keyPrefix = namespace + ":interactivity:";
+    }
+
+    /**
+     * Gets the key of a session hash.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @return The key of the session hash.
+     */
+    protected String sessionKey(long chatId, int replyTo) {
+        return replyTo == MAIN_SESSION ? keyPrefix + chatId : keyPrefix + chatId + "@" + replyTo;
+    }
+
+    /**
+     * Gets the key of a session timeout, which expires when the session does.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @return The key of the session timeout.
+     */
+    protected String timeoutKey(long chatId, int replyTo) {
+        return sessionKey(chatId, replyTo) + TIMEOUT_SUFFIX;
+    }
+
+    /**
+     * Gets the keys of a session, as passed to the scripts.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @return The session hash key, the session timeout key, the versions counter key, and the sessions index key.
+     */
+    protected String[] sessionKeys(long chatId, int replyTo) {
+        return new String[]{sessionKey(chatId, replyTo), timeoutKey(chatId, replyTo), keyPrefix + "versions",
+                sessionsIndexKey()};
+    }
+
+    /**
+     * Gets the key of the sessions index, a sorted set of the sessions keys scored by their expiry time.
+     *
+     * @return The key of the sessions index.
+     */
+    protected String sessionsIndexKey() {
+        return keyPrefix + "sessions";
+    }
+
+    /**
+     * Gets the scores range of the active sessions in the sessions index, which haven't expired yet.
+     *
+     * @return The range of the active sessions expiry times.
+     */
+    protected static Range<Double> activeRange() {
+        return Range.from(Range.Boundary.excluding((double) System.currentTimeMillis()), Range.Boundary.unbounded());
+    }
+
+    /**
+     * Gets the scores range of the expired sessions in the sessions index, which can be dropped from it.
+     *
+     * @return The range of the expired sessions expiry times.
+     */
+    protected static Range<Double> expiredRange() {
+        return Range.from(Range.Boundary.unbounded(), Range.Boundary.including((double) System.currentTimeMillis()));
+    }
+
+    /**
+     * Encodes the arguments of the remove script.
+     *
+     * @param expected The session the removal is based on, {@code null} for an unconditional removal.
+     * @return The arguments of the remove script.
+     */
+    protected String[] encodeRemoval(InteractivitySession expected) {
+        return new String[]{expected == null ? "0" : Long.toString(expected.version), invalidationChannel()};
+    }
+
+    /**
+     * Records a write which was rejected for being based on a stale session.
+     *
+     * @param chatId    The chat id.
+     * @param operation The rejected operation, ex: {@code update}.
+     */
+    protected void conflict(long chatId, String operation) {
+        logger.warn("Rejected the {} of the interactivity session of chat ({}), as it was modified concurrently",
+                operation, chatId);
+        InteractivityMetrics.conflicts.labels(operation).inc();
+    }
+
+    /**
+     * Decodes a session from the fields of its' hash.
+     *
+     * @param hash The fields of the session hash.
+     * @return The decoded session, {@code null} if the hash is empty.
+     */
+    protected InteractivitySession decodeSession(Map<String, String> hash) {
+        String listenerId = hash.get(LISTENER_ID_FIELD);
+        if (listenerId == null) return null;
+
+        String messageId = hash.get(MESSAGE_ID_FIELD);
+        String version = hash.get(VERSION_FIELD);
+
+        Map<String, String> data = new HashMap<>();
+        for (Map.Entry<String, String> field : hash.entrySet())
+            if (field.getKey().startsWith(DATA_PREFIX))
+                data.put(field.getKey().substring(DATA_PREFIX.length()), field.getValue());
+
+        return new InteractivitySession(listenerId, messageId == null ? null : Integer.valueOf(messageId), data,
+                version == null ? 0 : Long.parseLong(version));
+    }
+
+    /**
+     * Decodes a session from the fields of its' hash, unless it has expired already.
+     * <p>
+     * The hash of an expired session is kept until its' expiry is delivered, or for the expiry grace period,
+     * so it's checked when loaded.
+     *
+     * @param hash The fields of the session hash.
+     * @return The decoded session, {@code null} if the hash is empty or the session has expired.
+     */
+    protected InteractivitySession decodeActiveSession(Map<String, String> hash) {
+        String expiresAt = hash.get(EXPIRES_AT_FIELD);
+        if (expiresAt != null && Long.parseLong(expiresAt) <= System.currentTimeMillis()) return null;
+        return decodeSession(hash);
+    }
+
+    /**
+     * Calculates the expiry time of a session which is written now.
+     *
+     * @param timeout The session timeout in seconds.
+     * @return The expiry time in milliseconds since the epoch, as stored in the {@code expiresAt} field.
+     */
+    protected String expiresAt(long timeout) {
+        return Long.toString(System.currentTimeMillis() + timeout * 1000);
+    }
+
+    /**
+     * Gets the channel which the writes of the sessions are published into, for invalidating the near caches.
+     *
+     * @return The channel name, an empty string when the writes are not published.
+     */
+    protected String invalidationChannel() {
+        return "";
+    }
+
+    /**
+     * Encodes a session into the arguments of the store script: its' timeout and invalidation channel,
+     * followed by the fields of its' hash.
+     *
+     * @param session The session to encode.
+     * @return The arguments of the store script.
+     */
+    protected String[] encodeSession(InteractivitySession session) {
+        List<String> fields = new ArrayList<>();
+        long timeout = sessionTimeout(session.listenerId);
+        fields.add(Long.toString(timeout));
+        fields.add(invalidationChannel());
+
+        if (timeout > 0) {
+            fields.add(EXPIRES_AT_FIELD);
+            fields.add(expiresAt(timeout));
+        }
+
+        fields.add(LISTENER_ID_FIELD);
+        fields.add(session.listenerId);
+
+        if (session.messageId != null) {
+            fields.add(MESSAGE_ID_FIELD);
+            fields.add(session.messageId.toString());
+        }
+
+        if (session.data != null) {
+            for (Map.Entry<String, String> entry : session.data.entrySet()) {
+                fields.add(DATA_PREFIX + entry.getKey());
+                fields.add(entry.getValue());
+            }
+        }
+
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * Collects the modified fields of a session hash from a processed state.
+     *
+     * @param state The processed state.
+     * @return The modified fields mapped to their new values, or to {@code null} when deleted. Empty if clean.
+     */
+    protected Map<String, String> collectChanges(InteractivityState state) {
+        Map<String, String> changes = new LinkedHashMap<>();
+
+        if (state.isBotMessageIdModified())
+            changes.put(MESSAGE_ID_FIELD, state.botMessageId == null ? null : state.botMessageId.toString());
+
+        for (String key : state.getModifiedKeys()) changes.put(DATA_PREFIX + key, state.data.get(key));
+        for (String key : state.getRemovedKeys()) changes.put(DATA_PREFIX + key, null);
+
+        return changes;
+    }
+
+    /**
+     * Encodes the changes of a session hash into the arguments of the update script,
+     * including the new expiry time when the timeout is refreshed.
+     *
+     * @param timeout The session timeout to refresh in seconds, {@code 0} to keep it as is.
+     * @param version The version of the session the changes are based on, {@code 0} for an unconditional update.
+     * @param changes The modified fields mapped to their new values, or to {@code null} when deleted.
+     * @return The arguments of the update script.
+     */
+    protected String[] encodeChanges(long timeout, long version, Map<String, String> changes) {
+        List<String> set = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+
+        if (timeout > 0) {
+            set.add(EXPIRES_AT_FIELD);
+            set.add(expiresAt(timeout));
+        }
+
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            if (change.getValue() == null) {
+                deleted.add(change.getKey());
+            } else {
+                set.add(change.getKey());
+                set.add(change.getValue());
+            }
+        }
+
+        String[] arguments = new String[4 + set.size() + deleted.size()];
+        arguments[0] = Long.toString(timeout);
+        arguments[1] = invalidationChannel();
+        arguments[2] = Long.toString(version);
+        arguments[3] = Integer.toString(set.size() / 2);
+        for (int i = 0; i < set.size(); i++) arguments[4 + i] = set.get(i);
+        for (int i = 0; i < deleted.size(); i++) arguments[4 + set.size() + i] = deleted.get(i);
+        return arguments;
+    }
+
+    /**
+     * Subscribes to the keyspace notifications of the sessions keys, unless already subscribed.
+     *
+     * @param client   The redis client to open the subscription connection, and the flags checking one with.
+     * @param required The {@code notify-keyspace-events} flags required by the caller, to warn about when missing.
+     */
+    protected void subscribeKeyspace(RedisClient client, String required) {
+        if (keyspaceConnection == null) {
+            keyspaceConnection = client.connectPubSub();
+            keyspaceConnection.addListener(new RedisPubSubAdapter<>() {
+                @Override
+                public void message(String pattern, String channel, String event) {
+                    keyspaceEvent(channel.substring(channel.indexOf(keyPrefix) + keyPrefix.length()), event);
+                }
+            });
+            keyspaceConnection.sync().psubscribe("__keyspace@*__:" + keyPrefix + "*");
+        }
+
+        //Checked on a regular connection, as a subscribed connection only accepts the subscription commands (RESP2).
+        try (StatefulRedisConnection<String, String> connection = client.connect()) {
+            String flags = connection.sync().configGet("notify-keyspace-events").get("notify-keyspace-events");
+            String enabled = flags == null ? "" : flags.replace("A", "g$lshzxet");
+            for (char flag : required.toCharArray()) {
+                if (enabled.indexOf(flag) == -1) {
+                    logger.warn("Redis keyspace notifications are not enabled (notify-keyspace-events = \"{}\", "
+                            + "requires \"{}\"), the interactivity sessions changes of other instances will be missed", flags, required);
+                    break;
+                }
+            }
+        } catch (RedisException e) {
+            logger.warn("Couldn't check if redis keyspace notifications are enabled", e);
+        }
+    }
+
+    /**
+     * Enables the active chats filter, so the chats without a session are skipped without querying redis.
+     * <p>
+     * The filter is loaded by scanning the sessions keys, and is kept in sync with the other instances of the bot
+     * through redis keyspace notifications, which require {@code notify-keyspace-events} to include {@code Kgh}.
+     *
+     * @param client The redis client to open the subscription and scanning connections with.
+     */
+    public void enableActiveChatsFilter(RedisClient client) {
+        //Subscribe before scanning, so no session created during the scan is missed.
+        subscribeKeyspace(client, "Kgh");
+
+        try (StatefulRedisConnection<String, String> connection = client.connect()) {
+            ScanIterator<String> keys = ScanIterator.scan(connection.sync(),
+                    ScanArgs.Builder.matches(keyPrefix + "*").limit(1000));
+            while (keys.hasNext()) {
+                long chatId = parseChatId(keys.next().substring(keyPrefix.length()));
+                if (chatId != 0) trackedChats.add(chatId);
+            }
+        }
+
+        activeChats = trackedChats;
+        logger.info("Loaded {} active interactivity sessions", trackedChats.size());
+    }
+
+    /**
+     * Enables delivering the expiry of the sessions to their listeners, by their {@code deactivated} method.
+     * <p>
+     * The sessions timeouts are set regardless, but without the expiry delivery their hashes are only deleted
+     * after the expiry grace period, and their listeners are not notified. The expiry is detected through
+     * redis keyspace notifications, which require {@code notify-keyspace-events} to include {@code Kx},
+     * and is delivered by a single instance of the bot, once redis evicts the timeout key.
+     *
+     * @param client The redis client to open the subscription and claiming connections with.
+     */
+    public void enableSessionExpiry(RedisClient client) {
+        expiryConnection = client.connect();
+        expiryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "alice-interactivity-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        subscribeKeyspace(client, "Kx");
+    }
+
+    /**
+     * Claims an expired session, and delivers it to its' listener if claimed by this instance.
+     *
+     * @param chatId  The chat id of the expired session.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     */
+    protected void claimExpiredSession(long chatId, int replyTo) {
+        //Async, as the notifications are received on the connections event loop.
+        expiryConnection.async().<List<String>>eval(CLAIM_SCRIPT, ScriptOutputType.MULTI,
+                sessionKeys(chatId, replyTo), invalidationChannel())
+                .thenAcceptAsync(fields -> {
+                    Map<String, String> hash = new HashMap<>();
+                    for (int i = 0; i + 1 < fields.size(); i += 2) hash.put(fields.get(i), fields.get(i + 1));
+
+                    InteractivitySession session = decodeSession(hash);
+                    if (session != null) sessionExpired(chatId, replyTo, session);
+                }, expiryExecutor)
+                .exceptionally(throwable -> {
+                    logger.error("Failed to expire the interactivity session of chat ({})", chatId, throwable);
+                    return null;
+                });
+    }
+
+    /**
+     * Parses the chat id of a session key.
+     *
+     * @param key The session key without the prefix.
+     * @return The chat id, {@code 0} if it's not a session key.
+     */
+    protected long parseChatId(String key) {
+        try {
+            return Long.parseLong(key);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Handles a keyspace notification of a session key.
+     *
+     * @param key   The session key without the prefix.
+     * @param event The event name, ex: {@code hset}, {@code del}.
+     */
+    protected void keyspaceEvent(String key, String event) {
+        if (key.endsWith(TIMEOUT_SUFFIX)) {
+            if (!event.equals("expired") || expiryConnection == null) return;
+
+            String sessionKey = key.substring(0, key.length() - TIMEOUT_SUFFIX.length());
+            int separator = sessionKey.indexOf('@');
+            long chatId = parseChatId(separator == -1 ? sessionKey : sessionKey.substring(0, separator));
+            int replyTo = separator == -1 ? MAIN_SESSION : (int) parseChatId(sessionKey.substring(separator + 1));
+            if (chatId != 0 && (separator == -1 || replyTo > 0)) claimExpiredSession(chatId, replyTo);
+            return;
+        }
+
+        //The active chats filter tracks the main sessions only.
+
+        long chatId = parseChatId(key);
+        if (chatId == 0) return;
+
+        switch (event) {
+            case "hset":
+            case "rename_to":
+                trackedChats.add(chatId);
+                break;
+            case "del":
+            case "expired":
+            case "evicted":
+            case "rename_from":
+                trackedChats.remove(chatId);
+                break;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (keyspaceConnection != null) keyspaceConnection.close();
+        if (expiryExecutor != null) expiryExecutor.shutdown();
+        if (expiryConnection != null) expiryConnection.close();
+    }
+}
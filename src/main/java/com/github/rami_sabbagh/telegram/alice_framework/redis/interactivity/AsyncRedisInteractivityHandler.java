@@ -0,0 +1,188 @@
+package com.github.rami_sabbagh.telegram.alice_framework.redis.interactivity;
+
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivitySession;
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivityState;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An InteractivityHandler which stores the session of each chat in a single redis hash, using pipelined async commands.
+ * <p>
+ * The commands auto-flushing is disabled on its' connection, so the session writes are queued without waiting,
+ * and are sent together when the handler is flushed: after each batch of updates, every flush interval,
+ * or before a read (which keeps the reads consistent with the queued writes, as they share the connection).
+ * <p>
+ * The connection has to be dedicated to the handler, as any other sync usage of it would never be flushed.
+ */
+public class AsyncRedisInteractivityHandler extends AbstractRedisInteractivityHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncRedisInteractivityHandler.class);
+
+    protected final StatefulRedisConnection<String, String> connection;
+    protected final RedisAsyncCommands<String, String> commands;
+
+    /**
+     * Whether there are queued commands which were not flushed yet.
+     */
+    protected final AtomicBoolean pending = new AtomicBoolean();
+
+    /**
+     * Flushes the queued writes periodically.
+     */
+    protected final ScheduledExecutorService flusher;
+
+    /**
+     * Creates a new InteractivityHandler which flushes the queued writes every 10 milliseconds.
+     *
+     * @param namespace  The namespace to prefix the redis keys with.
+     * @param connection A redis connection dedicated to the handler, it's closed with the handler.
+     */
+    public AsyncRedisInteractivityHandler(String namespace, StatefulRedisConnection<String, String> connection) {
+        this(namespace, connection, 10);
+    }
+
+    /**
+     * Creates a new InteractivityHandler which uses pipelined async redis commands.
+     *
+     * @param namespace     The namespace to prefix the redis keys with.
+     * @param connection    A redis connection dedicated to the handler, it's closed with the handler.
+     * @param flushInterval The maximum time the writes can be queued for, in milliseconds.
+     */
+    public AsyncRedisInteractivityHandler(String namespace, StatefulRedisConnection<String, String> connection, long flushInterval) {
+        super(namespace);
+        this.connection = connection;
+        this.commands = connection.async();
+        connection.setAutoFlushCommands(false);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "alice-interactivity-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits for the result of a command, flushing the queued commands first.
+     *
+     * @param future The future of the command.
+     * @param <T>    The result type.
+     * @return The result of the command.
+     */
+    protected <T> T await(RedisFuture<T> future) {
+        //The pending flag is kept, as other threads may queue commands meanwhile.
+        connection.flushCommands();
+        return LettuceFutures.awaitOrCancel(future, connection.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Queues a write command, logging its' failure.
+     *
+     * @param future The future of the command.
+     * @param chatId The chat id the command writes into.
+     */
+    protected void queue(RedisFuture<?> future, long chatId) {
+        pending.set(true);
+        future.whenComplete((result, throwable) -> {
+            if (throwable != null)
+                logger.error("Failed to write the interactivity session of chat ({})", chatId, throwable);
+        });
+    }
+
+    /**
+     * Queues a conditional write script, recording its' rejection if the session was modified concurrently.
+     *
+     * @param future    The future of the script, which results in {@code -1} when rejected.
+     * @param chatId    The chat id the script writes into.
+     * @param operation The name of the write operation.
+     */
+    protected void queueConditional(RedisFuture<Long> future, long chatId, String operation) {
+        queue(future, chatId);
+        future.thenAccept(result -> {
+            if (result == -1) conflict(chatId, operation);
+        });
+    }
+
+    @Override
+    public long countSessions() {
+        String index = sessionsIndexKey();
+        commands.zremrangebyscore(index, expiredRange()); //Sent with the count.
+        return await(commands.zcount(index, activeRange()));
+    }
+
+    @Override
+    protected InteractivitySession loadSession(long chatId, int replyTo) {
+        return decodeActiveSession(await(commands.hgetall(sessionKey(chatId, replyTo))));
+    }
+
+    @Override
+    protected void storeSession(long chatId, int replyTo, InteractivitySession session) {
+        queue(commands.eval(STORE_SCRIPT, ScriptOutputType.INTEGER,
+                sessionKeys(chatId, replyTo), encodeSession(session)), chatId);
+    }
+
+    @Override
+    protected void updateSession(long chatId, int replyTo, InteractivitySession session, InteractivityState state) {
+        Map<String, String> changes = collectChanges(state);
+        long timeout = sessionTimeout(session.listenerId);
+        if (changes.isEmpty() && timeout == 0) return;
+
+        //EVAL rather than EVALSHA, so a missing script can't fail the write after it was queued.
+        queueConditional(commands.eval(UPDATE_SCRIPT, ScriptOutputType.INTEGER, sessionKeys(chatId, replyTo),
+                encodeChanges(timeout, session.version, changes)), chatId, "update");
+    }
+
+    @Override
+    protected void deleteSession(long chatId, int replyTo) {
+        queue(commands.eval(REMOVE_SCRIPT, ScriptOutputType.INTEGER,
+                sessionKeys(chatId, replyTo), encodeRemoval(null)), chatId);
+    }
+
+    /**
+     * Removes a session unless it was modified concurrently, awaiting the result so the rejection is reported.
+     *
+     * @param chatId   The chat id.
+     * @param replyTo  The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @param expected The session as it was loaded.
+     * @return {@code false} if the session was modified since it was loaded, so it was kept.
+     */
+    @Override
+    protected boolean deleteSession(long chatId, int replyTo, InteractivitySession expected) {
+        if (expected == null) {
+            deleteSession(chatId, replyTo);
+            return true;
+        }
+
+        RedisFuture<Long> result = commands.eval(REMOVE_SCRIPT, ScriptOutputType.INTEGER,
+                sessionKeys(chatId, replyTo), encodeRemoval(expected));
+        if (await(result) != -1) return true;
+
+        conflict(chatId, "removal");
+        return false;
+    }
+
+    @Override
+    public void flush() {
+        if (pending.compareAndSet(true, false)) connection.flushCommands();
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        pending.set(true);
+        flush();
+        connection.close();
+        super.close();
+    }
+}
@@ -0,0 +1,242 @@
+package com.github.rami_sabbagh.telegram.alice_framework.redis.interactivity;
+
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivitySession;
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivityState;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateAdapter;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.SocketAddress;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@code RedisInteractivityHandler} which keeps the recently used sessions in the process memory,
+ * so the messages of an active conversation are processed without reading the session from redis.
+ * <p>
+ * Redis stays the source of truth: the writes go through to it, and each write publishes the session key
+ * into the instance's invalidation channel, so the other instances drop their cached copy of the session.
+ * All the instances of the bot have to use this handler, as the writes of the plain handlers are not published.
+ * <p>
+ * The cache is cleared whenever the invalidations subscription is disconnected, as the invalidations are missed meanwhile.
+ * The sessions with a timeout are cached until they expire, as their expiry publishes no invalidation.
+ */
+public class NearCachedRedisInteractivityHandler extends RedisInteractivityHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearCachedRedisInteractivityHandler.class);
+
+    /**
+     * The unique id of this instance, which names its' invalidation channel.
+     */
+    public final String instanceId = UUID.randomUUID().toString();
+
+    protected final String channelPrefix;
+
+    /**
+     * The cached sessions mapped by their keys in access order, guarded by itself.
+     */
+    protected final Map<String, CachedSession> cache;
+
+    /**
+     * Counts the received invalidations, so a session read before an invalidation is not cached after it.
+     */
+    protected final AtomicLong invalidations = new AtomicLong();
+
+    protected final StatefulRedisPubSubConnection<String, String> invalidationConnection;
+
+    /**
+     * Creates a new InteractivityHandler which caches the recently used sessions.
+     *
+     * @param namespace The namespace to prefix the redis keys with.
+     * @param commands  The redis sync commands to use.
+     * @param client    The redis client to open the invalidations subscription with.
+     * @param capacity  The maximum number of sessions to cache.
+     */
+    public NearCachedRedisInteractivityHandler(String namespace, RedisCommands<String, String> commands,
+                                               RedisClient client, int capacity) {
+        super(namespace, commands);
+        channelPrefix = keyPrefix + "invalidations:";
+
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSession> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        String ownChannel = invalidationChannel();
+        invalidationConnection = client.connectPubSub();
+        invalidationConnection.addListener(new RedisPubSubAdapter<>() {
+            @Override
+            public void message(String pattern, String channel, String key) {
+                if (!channel.equals(ownChannel)) invalidate(key);
+            }
+        });
+        client.addListener(new RedisConnectionStateAdapter() {
+            @Override
+            public void onRedisConnected(RedisChannelHandler<?, ?> connection, SocketAddress socketAddress) {
+                if (connection == invalidationConnection) clear();
+            }
+
+            @Override
+            public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+                if (connection == invalidationConnection) clear();
+            }
+        });
+        invalidationConnection.sync().psubscribe(channelPrefix + "*");
+    }
+
+    @Override
+    protected String invalidationChannel() {
+        return channelPrefix + instanceId;
+    }
+
+    /**
+     * Drops a cached session.
+     *
+     * @param key The session key.
+     */
+    protected void invalidate(String key) {
+        synchronized (cache) {
+            invalidations.incrementAndGet();
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * Drops all the cached sessions.
+     */
+    protected void clear() {
+        synchronized (cache) {
+            invalidations.incrementAndGet();
+            cache.clear();
+        }
+        logger.debug("Cleared the interactivity near cache");
+    }
+
+    /**
+     * Caches a session, unless an invalidation was received since the session was read or written.
+     *
+     * @param key          The session key.
+     * @param session      The session, {@code null} if it doesn't exist.
+     * @param expiresAt    The expiry time of the session in milliseconds since the epoch, {@code 0} for none.
+     * @param invalidation The invalidations count before the session was read or written.
+     */
+    protected void cache(String key, InteractivitySession session, long expiresAt, long invalidation) {
+        InteractivitySession copy = session == null ? null : new InteractivitySession(session.listenerId,
+                session.messageId, new HashMap<>(session.data), session.version);
+
+        synchronized (cache) {
+            if (invalidations.get() == invalidation) cache.put(key, new CachedSession(copy, expiresAt));
+            else cache.remove(key);
+        }
+    }
+
+    /**
+     * Calculates the expiry time of a session written now, as cached.
+     *
+     * @param session The written session.
+     * @return The expiry time in milliseconds since the epoch, {@code 0} if the session has no timeout.
+     */
+    protected long cachedExpiry(InteractivitySession session) {
+        long timeout = sessionTimeout(session.listenerId);
+        return timeout > 0 ? System.currentTimeMillis() + timeout * 1000 : 0;
+    }
+
+    @Override
+    protected InteractivitySession loadSession(long chatId, int replyTo) {
+        String key = sessionKey(chatId, replyTo);
+        CachedSession cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+            if (cached != null && cached.expiresAt != 0 && cached.expiresAt <= System.currentTimeMillis()) {
+                cache.remove(key); //Expired, it's read again in case its' timeout was refreshed by another instance.
+                cached = null;
+            }
+        }
+
+        //A copy, as the state modifies the data map.
+        if (cached != null) return cached.session == null ? null : new InteractivitySession(cached.session.listenerId,
+                cached.session.messageId, new HashMap<>(cached.session.data), cached.session.version);
+
+        long invalidation = invalidations.get();
+        Map<String, String> hash = commands.hgetall(key);
+        InteractivitySession session = decodeActiveSession(hash);
+        String expiresAt = hash.get(EXPIRES_AT_FIELD);
+        cache(key, session, session == null || expiresAt == null ? 0 : Long.parseLong(expiresAt), invalidation);
+        return session;
+    }
+
+    @Override
+    protected void storeSession(long chatId, int replyTo, InteractivitySession session) {
+        long invalidation = invalidations.get();
+        long version = store(chatId, replyTo, session);
+        cache(sessionKey(chatId, replyTo), new InteractivitySession(session.listenerId, session.messageId, session.data, version),
+                cachedExpiry(session), invalidation);
+    }
+
+    @Override
+    protected void updateSession(long chatId, int replyTo, InteractivitySession session, InteractivityState state) {
+        Map<String, String> changes = collectChanges(state);
+        if (changes.isEmpty() && sessionTimeout(session.listenerId) == 0) return;
+
+        String key = sessionKey(chatId, replyTo);
+        long invalidation = invalidations.get();
+        long version = update(chatId, replyTo, session, changes);
+        if (version <= 0) //The session was ended or modified meanwhile.
+            invalidate(key);
+        else //Including a refreshed timeout, which gives the session a new version.
+            cache(key, new InteractivitySession(session.listenerId, state.botMessageId, state.data, version),
+                    cachedExpiry(session), invalidation);
+    }
+
+    @Override
+    protected boolean deleteSession(long chatId, int replyTo, InteractivitySession expected) {
+        String key = sessionKey(chatId, replyTo);
+        long invalidation = invalidations.get();
+        boolean deleted = super.deleteSession(chatId, replyTo, expected);
+        if (deleted) cache(key, null, 0, invalidation);
+        else invalidate(key);
+        return deleted;
+    }
+
+    @Override
+    protected void sessionEnded(long chatId, int replyTo, InteractivitySession session, String reason) {
+        invalidate(sessionKey(chatId, replyTo));
+        super.sessionEnded(chatId, replyTo, session, reason);
+    }
+
+    @Override
+    public void close() {
+        invalidationConnection.close();
+        super.close();
+    }
+
+    /**
+     * A cached session, or a session cached as missing.
+     */
+    protected static final class CachedSession {
+        /**
+         * The session, {@code null} if it doesn't exist.
+         */
+        final InteractivitySession session;
+
+        /**
+         * The expiry time of the session in milliseconds since the epoch, {@code 0} for none.
+         */
+        final long expiresAt;
+
+        CachedSession(InteractivitySession session, long expiresAt) {
+            this.session = session;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,15 +1,22 @@
 package com.github.rami_sabbagh.telegram.alice_framework.redis.interactivity;
 
-import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivityHandler;
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivitySession;
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivityState;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.api.sync.RedisCommands;
 
-import java.util.HashMap;
 import java.util.Map;
 
-public class RedisInteractivityHandler extends InteractivityHandler {
+/**
+ * An InteractivityHandler which stores the session of each chat in a single redis hash, using sync commands.
+ */
+public class RedisInteractivityHandler extends AbstractRedisInteractivityHandler {
 
-    protected final String keyPrefix;
     protected final RedisCommands<String, String> commands;
+    protected final String storeScriptDigest;
+    protected final String updateScriptDigest;
+    protected final String removeScriptDigest;
 
     /**
      * Creates a new InteractivityHandler which stores it's data on a redis database.
@@ -18,47 +25,94 @@ public class RedisInteractivityHandler extends InteractivityHandler {
      * @param commands  The redis sync commands to use.
      */
     public RedisInteractivityHandler(String namespace, RedisCommands<String, String> commands) {
-        keyPrefix = namespace + ":interactivity:";
+        super(namespace);
         this.commands = commands;
+        storeScriptDigest = commands.digest(STORE_SCRIPT);
+        updateScriptDigest = commands.digest(UPDATE_SCRIPT);
+        removeScriptDigest = commands.digest(REMOVE_SCRIPT);
+    }
+
+    /**
+     * Evaluates a cached script, loading it into the scripts cache if it's missing.
+     *
+     * @param script    The script source.
+     * @param digest    The script digest.
+     * @param keys      The keys of the script.
+     * @param arguments The arguments of the script.
+     * @return The integer result of the script.
+     */
+    protected long evalCached(String script, String digest, String[] keys, String[] arguments) {
+        try {
+            return commands.<Long>evalsha(digest, ScriptOutputType.INTEGER, keys, arguments);
+        } catch (RedisNoScriptException e) {
+            return commands.<Long>eval(script, ScriptOutputType.INTEGER, keys, arguments); //Loads the script into the cache.
+        }
     }
 
     @Override
-    protected void setActiveListenerId(long chatId, String listenerId) {
-        if (listenerId == null)
-            commands.del(keyPrefix + chatId + ":listenerId");
-        else
-            commands.set(keyPrefix + chatId + ":listenerId", listenerId);
+    public long countSessions() {
+        String index = sessionsIndexKey();
+        commands.zremrangebyscore(index, expiredRange());
+        return commands.zcount(index, activeRange());
     }
 
     @Override
-    protected String getActiveListenerId(long chatId) {
-        return commands.get(keyPrefix + chatId + ":listenerId");
+    protected InteractivitySession loadSession(long chatId, int replyTo) {
+        return decodeActiveSession(commands.hgetall(sessionKey(chatId, replyTo)));
+    }
+
+    /**
+     * Stores an interactivity session of a chat, replacing the previous one.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @param session The session to store.
+     * @return The new version of the session.
+     */
+    protected long store(long chatId, int replyTo, InteractivitySession session) {
+        return evalCached(STORE_SCRIPT, storeScriptDigest, sessionKeys(chatId, replyTo), encodeSession(session));
+    }
+
+    /**
+     * Updates the modified fields of a session, and refreshes its' timeout.
+     *
+     * @param chatId  The chat id.
+     * @param replyTo The id of the bot message the session is bound to, {@code 0} for the chat's main session.
+     * @param session The session the state was constructed from.
+     * @param changes The modified fields mapped to their new values, or to {@code null} when deleted.
+     * @return The version of the session after the update, {@code 0} if it no longer exists,
+     * or {@code -1} if it was modified since it was loaded.
+     */
+    protected long update(long chatId, int replyTo, InteractivitySession session, Map<String, String> changes) {
+        long result = evalCached(UPDATE_SCRIPT, updateScriptDigest, sessionKeys(chatId, replyTo),
+                encodeChanges(sessionTimeout(session.listenerId), session.version, changes));
+        if (result == -1) conflict(chatId, "update");
+        return result;
     }
 
     @Override
-    protected void setMessageId(long chatId, Integer messageId) {
-        if (messageId == null)
-            commands.del(keyPrefix + chatId + ":messageId");
-        else
-            commands.set(keyPrefix + chatId + ":messageId", messageId.toString());
+    protected void storeSession(long chatId, int replyTo, InteractivitySession session) {
+        store(chatId, replyTo, session);
     }
 
     @Override
-    protected Integer getMessageId(long chatId) {
-        String value = commands.get(keyPrefix + chatId + ":messageId");
-        if (value == null) return null;
-        return Integer.parseInt(value);
+    protected void updateSession(long chatId, int replyTo, InteractivitySession session, InteractivityState state) {
+        Map<String, String> changes = collectChanges(state);
+        if (changes.isEmpty() && sessionTimeout(session.listenerId) == 0) return;
+        update(chatId, replyTo, session, changes);
     }
 
     @Override
-    protected void setStateData(long chatId, Map<String, String> data) {
-        commands.del(keyPrefix + chatId + ":data");
-        if (data != null && !data.isEmpty()) commands.hset(keyPrefix + chatId + ":data", data);
+    protected void deleteSession(long chatId, int replyTo) {
+        deleteSession(chatId, replyTo, null);
     }
 
     @Override
-    protected Map<String, String> getStateData(long chatId) {
-        Map<String, String> data = commands.hgetall(keyPrefix + chatId + ":data");
-        return new HashMap<>(data); //Clone it so it's a modifiable HashMap for sure.
+    protected boolean deleteSession(long chatId, int replyTo, InteractivitySession expected) {
+        if (evalCached(REMOVE_SCRIPT, removeScriptDigest, sessionKeys(chatId, replyTo), encodeRemoval(expected)) != -1)
+            return true;
+
+        conflict(chatId, "removal");
+        return false;
     }
 }
@@ -0,0 +1,55 @@
+package com.github.rami_sabbagh.telegram.alice_framework.utilities;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A small lock-free cache of the chats types, keyed by the chat id.
+ * <p>
+ * Each slot packs the chat id and its' type into a single {@code long}, and colliding chats simply replace each other.
+ * That's safe because a chat id never changes its' type (a migrated group gets a new id).
+ */
+public class ChatTypeCache {
+
+    private static final ChatUtilities.ChatType[] types = ChatUtilities.ChatType.values();
+
+    private final AtomicLongArray slots;
+    private final int shift;
+
+    /**
+     * Creates a cache with a specific number of slots.
+     *
+     * @param capacity The number of slots, rounded up to a power of 2.
+     */
+    public ChatTypeCache(int capacity) {
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(capacity, 2) - 1);
+        slots = new AtomicLongArray(1 << bits);
+        shift = 32 - bits;
+    }
+
+    private int slot(long chatId) {
+        return ((int) (chatId ^ (chatId >>> 32)) * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Gets the cached type of a chat.
+     *
+     * @param chatId The id of the chat.
+     * @return The type of the chat, {@code null} if it's not cached.
+     */
+    public ChatUtilities.ChatType get(long chatId) {
+        long entry = slots.get(slot(chatId));
+        int type = (int) (entry & 7);
+        if (type == 0 || entry >> 3 != chatId) return null;
+        return types[type - 1];
+    }
+
+    /**
+     * Caches the type of a chat.
+     *
+     * @param chatId The id of the chat.
+     * @param type   The type of the chat.
+     */
+    public void put(long chatId, ChatUtilities.ChatType type) {
+        slots.set(slot(chatId), chatId << 3 | (type.ordinal() + 1));
+    }
+}
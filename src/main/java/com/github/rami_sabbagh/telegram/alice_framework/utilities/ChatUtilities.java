@@ -1,15 +1,40 @@
 package com.github.rami_sabbagh.telegram.alice_framework.utilities;
 
 import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
 
 public class ChatUtilities {
 
+    /**
+     * The types of the recently seen chats, so they are classified only once.
+     */
+    private static final ChatTypeCache chatTypes = new ChatTypeCache(4096);
+
     /**
      * Gets the type of a chat.
      * @param chat The chat to check.
      * @return The type of the chat.
      */
     public static ChatType getChatType(Chat chat) {
+        long chatId = chat.getId();
+        ChatType type = chatTypes.get(chatId);
+        if (type != null) return type;
+
+        type = classifyChat(chat);
+        chatTypes.put(chatId, type);
+        return type;
+    }
+
+    /**
+     * Gets the type of the chat a message was sent in.
+     * @param message The message to check.
+     * @return The type of the message's chat.
+     */
+    public static ChatType getChatType(Message message) {
+        return getChatType(message.getChat());
+    }
+
+    private static ChatType classifyChat(Chat chat) {
         if (chat.isUserChat()) return ChatType.USER;
         else if (chat.isGroupChat()) return ChatType.GROUP;
         else if (chat.isSuperGroupChat()) return ChatType.SUPERGROUP;
@@ -18,6 +43,23 @@ public class ChatUtilities {
     }
 
     public enum ChatType {
-        USER, GROUP, SUPERGROUP, CHANNEL, UNKNOWN
+        USER("private"), GROUP("group"), SUPERGROUP("supergroup"), CHANNEL("channel"), UNKNOWN("unknown");
+
+        /**
+         * The name of the type in Telegram's API.
+         */
+        public final String apiName;
+
+        ChatType(String apiName) {
+            this.apiName = apiName;
+        }
+
+        /**
+         * Checks if this is a group or a super group chat type.
+         * @return {@code true} if it's a group or super group chat type.
+         */
+        public boolean isGroup() {
+            return this == GROUP || this == SUPERGROUP;
+        }
     }
 }
@@ -0,0 +1,250 @@
+package com.github.rami_sabbagh.telegram.alice_framework.utilities;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+
+/**
+ * A thread-safe set of primitive {@code long} values, like chat ids, without boxing them.
+ * <p>
+ * The values are split into segments, each is an open addressing hash table with its' own lock,
+ * and the lookups use optimistic reads, so they don't block unless they race with a write.
+ */
+public class ConcurrentLongSet {
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    /**
+     * Creates a set with 16 segments.
+     */
+    public ConcurrentLongSet() {
+        this(16);
+    }
+
+    /**
+     * Creates a set with a specific number of segments.
+     *
+     * @param concurrency The number of segments, rounded up to a power of 2.
+     */
+    public ConcurrentLongSet(int concurrency) {
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(concurrency, 2) - 1);
+        segments = new Segment[1 << bits];
+        for (int i = 0; i < segments.length; i++) segments[i] = new Segment();
+        segmentShift = 64 - bits;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> segmentShift)];
+    }
+
+    /**
+     * Checks if the set contains a value.
+     *
+     * @param value The value to check.
+     * @return {@code true} if the set contains the value.
+     */
+    public boolean contains(long value) {
+        long hash = mix(value);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.lock.tryOptimisticRead();
+        boolean found = segment.contains(value, hash);
+        if (segment.lock.validate(stamp)) return found;
+
+        stamp = segment.lock.readLock();
+        try {
+            return segment.contains(value, hash);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Adds a value into the set.
+     *
+     * @param value The value to add.
+     * @return {@code true} if the value was not in the set.
+     */
+    public boolean add(long value) {
+        long hash = mix(value);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.add(value, hash);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes a value from the set.
+     *
+     * @param value The value to remove.
+     * @return {@code true} if the value was in the set.
+     */
+    public boolean remove(long value) {
+        long hash = mix(value);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.remove(value, hash);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Counts the values in the set.
+     *
+     * @return The number of values in the set.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.size + (segment.hasZero ? 1 : 0);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all the values from the set.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                segment.table = new long[Segment.INITIAL_CAPACITY];
+                segment.size = 0;
+                segment.hasZero = false;
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Performs an action for each value in the set, one segment at a time.
+     *
+     * @param action The action to perform.
+     */
+    public void forEach(LongConsumer action) {
+        for (Segment segment : segments) {
+            long[] values;
+            long stamp = segment.lock.readLock();
+            try {
+                values = new long[segment.size + (segment.hasZero ? 1 : 0)];
+                int i = 0;
+                if (segment.hasZero) values[i++] = 0;
+                for (long value : segment.table) if (value != 0) values[i++] = value;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+
+            //Run the action outside the lock, so it can modify the set.
+            for (long value : values) action.accept(value);
+        }
+    }
+
+    /**
+     * A linear probing hash table, where {@code 0} marks the empty slots (and is tracked separately).
+     */
+    private static final class Segment {
+        static final int INITIAL_CAPACITY = 16;
+
+        final StampedLock lock = new StampedLock();
+        long[] table = new long[INITIAL_CAPACITY];
+        int size;
+        boolean hasZero;
+
+        boolean contains(long value, long hash) {
+            if (value == 0) return hasZero;
+
+            long[] table = this.table;
+            int mask = table.length - 1;
+            for (int index = (int) hash & mask; ; index = (index + 1) & mask) {
+                long slot = table[index];
+                if (slot == value) return true;
+                if (slot == 0) return false;
+            }
+        }
+
+        boolean add(long value, long hash) {
+            if (value == 0) {
+                if (hasZero) return false;
+                return hasZero = true;
+            }
+
+            if ((size + 1) * 4 > table.length * 3) resize(table.length * 2);
+
+            int mask = table.length - 1;
+            int index = (int) hash & mask;
+            while (table[index] != 0) {
+                if (table[index] == value) return false;
+                index = (index + 1) & mask;
+            }
+
+            table[index] = value;
+            size++;
+            return true;
+        }
+
+        boolean remove(long value, long hash) {
+            if (value == 0) {
+                if (!hasZero) return false;
+                hasZero = false;
+                return true;
+            }
+
+            int mask = table.length - 1;
+            int gap = (int) hash & mask;
+            while (table[gap] != value) {
+                if (table[gap] == 0) return false;
+                gap = (gap + 1) & mask;
+            }
+
+            //Shift back the following entries of the probe sequence, so no lookup stops at the gap.
+            for (int next = (gap + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+                int home = (int) mix(table[next]) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    table[gap] = table[next];
+                    gap = next;
+                }
+            }
+
+            table[gap] = 0;
+            size--;
+            return true;
+        }
+
+        void resize(int capacity) {
+            long[] old = table;
+            long[] table = new long[capacity];
+            int mask = capacity - 1;
+
+            for (long value : old) {
+                if (value == 0) continue;
+                int index = (int) mix(value) & mask;
+                while (table[index] != 0) index = (index + 1) & mask;
+                table[index] = value;
+            }
+
+            this.table = table;
+        }
+    }
+}
@@ -232,7 +232,7 @@ public class MessageBuilder {
      */
     public MessageBuilder replyToOnlyInGroup(Message message) {
         sendMessage.setChatId(message.getChatId());
-        sendMessage.setReplyToMessageId(message.isUserMessage() ? null : message.getMessageId());
+        sendMessage.setReplyToMessageId(ChatUtilities.getChatType(message) == ChatUtilities.ChatType.USER ? null : message.getMessageId());
         return this;
     }
 
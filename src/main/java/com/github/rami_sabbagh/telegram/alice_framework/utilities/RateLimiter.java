@@ -0,0 +1,97 @@
+package com.github.rami_sabbagh.telegram.alice_framework.utilities;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces the messages sent by the bot, to stay within Telegram's global and per-chat sending limits.
+ * <p>
+ * Each message is given the earliest time slot which satisfies both the global rate and the rate of its' chat,
+ * and the caller sleeps until its' slot. The slots are given in the order the messages are acquired.
+ */
+public class RateLimiter {
+
+    /**
+     * The number of tracked chats which triggers dropping the chats with a passed slot.
+     */
+    private static final int CLEANUP_THRESHOLD = 4096;
+
+    private final long globalInterval;
+    private final long chatInterval;
+
+    /**
+     * The next free global slot in nanoseconds, guarded by this.
+     */
+    private long nextSlot = System.nanoTime();
+
+    /**
+     * The next free slot of each chat in nanoseconds, guarded by this.
+     */
+    private final Map<Long, Long> nextChatSlots = new HashMap<>();
+
+    /**
+     * Creates a rate limiter with Telegram's limits of bulk messages: 30 messages per second, and 1 per chat.
+     */
+    public RateLimiter() {
+        this(30, 1);
+    }
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param globalRate The maximum number of messages per second.
+     * @param chatRate   The maximum number of messages per second for a single chat.
+     */
+    public RateLimiter(double globalRate, double chatRate) {
+        if (globalRate <= 0 || chatRate <= 0) throw new IllegalArgumentException("The rates must be positive!");
+        globalInterval = (long) (TimeUnit.SECONDS.toNanos(1) / globalRate);
+        chatInterval = (long) (TimeUnit.SECONDS.toNanos(1) / chatRate);
+    }
+
+    /**
+     * Reserves a slot for sending a message into a chat, without waiting for it.
+     *
+     * @param chatId The chat id.
+     * @return The time to wait before sending the message in nanoseconds, {@code 0} if it can be sent right away.
+     */
+    public synchronized long reserve(long chatId) {
+        long now = System.nanoTime();
+        long slot = Math.max(now, nextSlot);
+
+        Long chatSlot = nextChatSlots.get(chatId);
+        if (chatSlot != null && chatSlot - slot > 0) slot = chatSlot;
+
+        nextSlot = slot + globalInterval;
+        nextChatSlots.put(chatId, slot + chatInterval);
+
+        if (nextChatSlots.size() > CLEANUP_THRESHOLD) {
+            Iterator<Long> slots = nextChatSlots.values().iterator();
+            while (slots.hasNext()) if (slots.next() - now <= 0) slots.remove();
+        }
+
+        return slot - now;
+    }
+
+    /**
+     * Waits for a slot for sending a message into a chat.
+     *
+     * @param chatId The chat id.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void acquire(long chatId) throws InterruptedException {
+        long wait = reserve(chatId);
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    /**
+     * Pauses the sending for some time, as requested by a {@code retry_after} response.
+     *
+     * @param seconds The time to pause for in seconds.
+     */
+    public synchronized void pause(long seconds) {
+        long resume = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        if (resume - nextSlot > 0) nextSlot = resume;
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.rami_sabbagh.telegram.alice_framework.commands;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PermissionsTest {
+
+    @Test
+    @DisplayName("Checks the required bits with a single mask")
+    void testAllows() {
+        assertTrue(Permissions.allows(Permissions.NONE, Permissions.NONE), "Public commands should be always allowed!");
+        assertTrue(Permissions.allows(Permissions.OWNER_GRANTS, Permissions.ADMIN), "Owners should be allowed admin commands!");
+        assertTrue(Permissions.allows(Permissions.ADMIN_GRANTS, Permissions.GROUP_ADMIN), "Admins should be allowed group admin commands!");
+        assertFalse(Permissions.allows(Permissions.ADMIN_GRANTS, Permissions.OWNER), "Admins shouldn't be allowed owner commands!");
+        assertFalse(Permissions.allows(Permissions.GROUP_ADMIN, Permissions.ADMIN), "Group admins shouldn't be allowed admin commands!");
+    }
+
+    @Test
+    @DisplayName("Allocates custom bits outside the reserved ones")
+    void testCustom() {
+        for (int i = 0; i < Permissions.CUSTOM_COUNT; i++) {
+            long bit = Permissions.custom(i);
+            assertEquals(1, Long.bitCount(bit), "Custom permission #" + i + " is not a single bit!");
+            assertEquals(0, bit & Permissions.RESERVED, "Custom permission #" + i + " overlaps the reserved bits!");
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> Permissions.custom(-1));
+        assertThrows(IllegalArgumentException.class, () -> Permissions.custom(Permissions.CUSTOM_COUNT));
+    }
+
+    @Test
+    @DisplayName("Commands require their privacy level permissions")
+    void testCommandPermissions() {
+        long moderator = Permissions.custom(0);
+
+        Command command = new CommandBuilder()
+                .name("test")
+                .privacy(Privacy.GROUP_ADMIN)
+                .permissions(moderator)
+                .action((message, parsedCommand) -> {
+                })
+                .build();
+
+        assertEquals(Permissions.GROUP_ADMIN | moderator, command.permissions, "Permissions mismatched!");
+        assertFalse(Permissions.allows(Permissions.GROUP_ADMIN, command.permissions), "Missing the custom permission!");
+        assertTrue(Permissions.allows(Permissions.GROUP_ADMIN | moderator, command.permissions), "Should be allowed!");
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.rami_sabbagh.telegram.alice_framework.commands.authorizers.audit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditLogTest {
+
+    private static AuthorizationEvent event(int userId) {
+        return new AuthorizationEvent(System.currentTimeMillis(), userId, userId, "test", null, 0);
+    }
+
+    @Test
+    @DisplayName("Writes all the published events in order")
+    void testPublish() {
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        AuditLog auditLog = new AuditLog(event -> written.add(event.userId), 16);
+
+        for (int i = 0; i < 1000; i++)
+            while (!auditLog.publish(event(i))) Thread.onSpinWait();
+        auditLog.close();
+
+        assertEquals(1000, written.size(), "Events count mismatched!");
+        for (int i = 0; i < written.size(); i++)
+            assertEquals(i, written.get(i), "Event #" + i + " was written out of order!");
+    }
+
+    @Test
+    @DisplayName("Drops the events when the buffer is full")
+    void testDrop() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AuditLog auditLog = new AuditLog(event -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 4);
+
+        //The first event occupies the writer thread.
+        assertTrue(auditLog.publish(event(0)), "Failed to publish into an empty buffer!");
+        blocked.await();
+
+        for (int i = 1; i <= 4; i++)
+            assertTrue(auditLog.publish(event(i)), "Failed to publish event #" + i);
+        assertFalse(auditLog.publish(event(5)), "Published into a full buffer!");
+        assertEquals(1, auditLog.getDropped(), "Dropped events count mismatched!");
+
+        release.countDown();
+        auditLog.close();
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.rami_sabbagh.telegram.alice_framework.interactivity;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InteractivityStateTest {
+
+    @Test
+    @DisplayName("Is clean when nothing is changed")
+    void testClean() {
+        InteractivityState state = new InteractivityState(new HashMap<>(Map.of("step", "1")), 42);
+
+        state.data.get("step");
+        state.data.put("step", "1");
+        state.botMessageId = 42;
+
+        assertFalse(state.isModified(), "Reported a clean state as modified!");
+        assertTrue(state.getModifiedKeys().isEmpty(), "Reported unchanged keys as modified!");
+    }
+
+    @Test
+    @DisplayName("Tracks the modified and removed keys")
+    void testDirtyKeys() {
+        InteractivityState state = new InteractivityState(new HashMap<>(Map.of("a", "1", "b", "2", "c", "3")), null);
+
+        state.data.put("a", "10");
+        state.data.remove("b");
+        state.data.put("d", "4");
+        state.data.remove("d");
+        state.data.entrySet().removeIf(entry -> entry.getKey().equals("c"));
+
+        assertTrue(state.isModified(), "Didn't report the state as modified!");
+        assertFalse(state.isBotMessageIdModified(), "Reported the bot message id as modified!");
+        assertEquals(Set.of("a"), state.getModifiedKeys(), "Modified keys mismatched!");
+        assertEquals(Set.of("b", "c", "d"), state.getRemovedKeys(), "Removed keys mismatched!");
+        assertEquals(Map.of("a", "10"), state.data, "Data mismatched!");
+    }
+
+    @Test
+    @DisplayName("Tracks the bot message id")
+    void testBotMessageId() {
+        InteractivityState state = new InteractivityState(null, 42);
+        state.botMessageId = null;
+
+        assertTrue(state.isBotMessageIdModified(), "Didn't report the bot message id as modified!");
+        assertTrue(state.isModified(), "Didn't report the state as modified!");
+    }
+}
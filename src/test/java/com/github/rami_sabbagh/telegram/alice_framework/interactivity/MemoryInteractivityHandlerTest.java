@@ -0,0 +1,189 @@
+package com.github.rami_sabbagh.telegram.alice_framework.interactivity;
+
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.ConcurrentLongSet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryInteractivityHandlerTest {
+
+    @Test
+    @DisplayName("Stores, loads and deletes sessions")
+    void testStoreLoadDelete() {
+        MemoryInteractivityHandler handler = new MemoryInteractivityHandler();
+
+        handler.storeSession(-1001234567890L, 0, new InteractivitySession("survey", 7, Map.of("step", "2")));
+        handler.storeSession(0, 0, new InteractivitySession("survey", null, Map.of()));
+
+        InteractivitySession session = handler.loadSession(-1001234567890L, 0);
+        assertNotNull(session, "The session is missing!");
+        assertEquals("survey", session.listenerId, "Listener id mismatched!");
+        assertEquals(7, session.messageId, "Message id mismatched!");
+        assertEquals(Map.of("step", "2"), session.data, "Data mismatched!");
+        assertNull(handler.loadSession(0, 0).messageId, "Message id mismatched!");
+
+        handler.deleteSession(-1001234567890L, 0);
+        assertNull(handler.loadSession(-1001234567890L, 0), "Loaded a deleted session!");
+        assertEquals(1, handler.size(), "Size mismatched!");
+
+        handler.close();
+    }
+
+    @Test
+    @DisplayName("Keeps the sessions bound to bot messages besides the chat's main session")
+    void testReplySessions(@TempDir Path directory) {
+        Path file = directory.resolve("sessions.bin");
+
+        MemoryInteractivityHandler handler = new MemoryInteractivityHandler(1000, 0, file, 0);
+        handler.storeSession(-42, 0, new InteractivitySession("menu", null, Map.of()));
+        handler.storeSession(-42, 15, new InteractivitySession("poll", 15, Map.of("votes", "3")));
+        handler.storeSession(-42, 16, new InteractivitySession("quiz", 16, Map.of()));
+
+        assertEquals("menu", handler.loadSession(-42, 0).listenerId, "Main listener mismatched!");
+        assertEquals("poll", handler.loadSession(-42, 15).listenerId, "Reply listener mismatched!");
+        assertNull(handler.loadSession(-42, 17), "Loaded a session of an unbound message!");
+
+        handler.deleteSession(-42, 15);
+        assertNull(handler.loadSession(-42, 15), "Loaded a deleted session!");
+        assertNotNull(handler.loadSession(-42, 0), "Deleted the main session with a reply session!");
+        handler.close();
+
+        MemoryInteractivityHandler restored = new MemoryInteractivityHandler(1000, 0, file, 0);
+        assertEquals(2, restored.size(), "Size mismatched!");
+        assertEquals("quiz", restored.loadSession(-42, 16).listenerId, "Restored reply listener mismatched!");
+        restored.close();
+    }
+
+    @Test
+    @DisplayName("Moves the main session of a migrated chat")
+    void testMigrateChat() {
+        MemoryInteractivityHandler handler = new MemoryInteractivityHandler();
+        handler.storeSession(-42, 0, new InteractivitySession("survey", null, Map.of("step", "3")));
+
+        assertTrue(handler.migrateChat(-42, -1000000000042L), "Didn't migrate the session!");
+        assertNull(handler.loadSession(-42, 0), "The old chat still has the session!");
+        assertEquals(Map.of("step", "3"), handler.loadSession(-1000000000042L, 0).data, "Data mismatched!");
+        assertFalse(handler.migrateChat(-42, -1000000000042L), "Migrated the session twice!");
+
+        handler.close();
+    }
+
+    @Test
+    @DisplayName("Keeps a session activated while the expiry of the previous one is delivered")
+    void testExpiryRace() {
+        MemoryInteractivityHandler handler = new MemoryInteractivityHandler();
+        handler.activeChats = new ConcurrentLongSet();
+        handler.registerListener("survey", new InteractivityListener() {
+            @Override
+            public void activated(long chatId, InteractivityState state) {
+            }
+
+            @Override
+            public boolean process(long chatId, Message message, InteractivityState state) {
+                return true;
+            }
+
+            @Override
+            public void deactivated(long chatId, InteractivityState state) {
+            }
+        });
+
+        handler.activateListener(-42, "survey");
+        InteractivitySession expired = handler.loadSession(-42, 0);
+
+        //The expired session is removed from storage, then a new one is activated before the expiry is delivered.
+        handler.deleteSession(-42, 0);
+        handler.activateListener(-42, "survey", Map.of("step", "1"));
+        handler.sessionExpired(-42, 0, expired);
+
+        assertFalse(handler.isInactiveChat(-42), "Filtered out the new session!");
+        assertEquals(Map.of("step", "1"), handler.loadSession(-42, 0).data, "Data mismatched!");
+
+        //Without a new session the chat is filtered out.
+        handler.deleteSession(-42, 0);
+        handler.sessionExpired(-42, 0, expired);
+        assertTrue(handler.isInactiveChat(-42), "Kept an inactive chat in the filter!");
+
+        handler.close();
+    }
+
+    @Test
+    @DisplayName("Evicts the least recently used sessions beyond the maximum")
+    void testEviction() {
+        MemoryInteractivityHandler handler = new MemoryInteractivityHandler(1600, 0);
+
+        for (long chatId = 1; chatId <= 10_000; chatId++) {
+            handler.storeSession(chatId, 0, new InteractivitySession("survey", null, Map.of()));
+            handler.loadSession(1, 0); //Keep the first session recently used.
+        }
+
+        assertTrue(handler.size() <= 1600, "Exceeded the maximum sessions!");
+        assertNotNull(handler.loadSession(1, 0), "Evicted a recently used session!");
+        assertNotNull(handler.loadSession(10_000, 0), "Evicted the newest session!");
+
+        handler.close();
+    }
+
+    @Test
+    @DisplayName("Restores the sessions from a snapshot")
+    void testSnapshot(@TempDir Path directory) {
+        Path file = directory.resolve("sessions.bin");
+
+        MemoryInteractivityHandler handler = new MemoryInteractivityHandler(1000, 0, file, 0);
+        for (long chatId = 1; chatId <= 100; chatId++)
+            handler.storeSession(chatId, 0, new InteractivitySession("survey", (int) chatId, Map.of("chat", "" + chatId)));
+        handler.close();
+
+        MemoryInteractivityHandler restored = new MemoryInteractivityHandler(1000, 0, file, 0);
+        assertEquals(100, restored.size(), "Size mismatched!");
+        for (long chatId = 1; chatId <= 100; chatId++) {
+            InteractivitySession session = restored.loadSession(chatId, 0);
+            assertNotNull(session, "Session " + chatId + " is missing!");
+            assertEquals((int) chatId, session.messageId, "Message id mismatched!");
+            assertEquals(Map.of("chat", "" + chatId), session.data, "Data mismatched!");
+        }
+        restored.close();
+    }
+
+    @Test
+    @DisplayName("Dispatches the restored sessions to the listeners registered after the snapshot is loaded")
+    void testRestoredListeners(@TempDir Path directory) {
+        Path file = directory.resolve("sessions.bin");
+
+        MemoryInteractivityHandler handler = new MemoryInteractivityHandler(1000, 0, file, 0);
+        handler.storeSession(-42, 0, new InteractivitySession("survey", null, Map.of()));
+        handler.storeSession(-43, 0, new InteractivitySession("quiz", null, Map.of()));
+        handler.close();
+
+        MemoryInteractivityHandler restored = new MemoryInteractivityHandler(1000, 0, file, 0);
+        InteractivityListener quiz = new NoopListener(), survey = new NoopListener();
+        restored.registerListener("quiz", quiz);
+        restored.registerListener("survey", survey);
+
+        assertSame(survey, restored.listenerOf(restored.loadSession(-42, 0)), "Survey listener mismatched!");
+        assertSame(quiz, restored.listenerOf(restored.loadSession(-43, 0)), "Quiz listener mismatched!");
+        assertNull(restored.listenerOf(new InteractivitySession("unknown", null, Map.of())), "Resolved an unknown listener!");
+        restored.close();
+    }
+
+    private static class NoopListener implements InteractivityListener {
+        @Override
+        public void activated(long chatId, InteractivityState state) {
+        }
+
+        @Override
+        public boolean process(long chatId, Message message, InteractivityState state) {
+            return true;
+        }
+
+        @Override
+        public void deactivated(long chatId, InteractivityState state) {
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.rami_sabbagh.telegram.alice_framework.interactivity;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateCodecTest {
+
+    static class Survey {
+        long chatId;
+        int step;
+        String answer;
+    }
+
+    static final StateCodec<Survey> codec = new StateCodec<>() {
+        @Override
+        public int version() {
+            return 2;
+        }
+
+        @Override
+        public void encode(Survey state, StateWriter writer) {
+            writer.writeSignedVarLong(state.chatId).writeVarInt(state.step).writeString(state.answer);
+        }
+
+        @Override
+        public Survey decode(StateReader reader, int version) {
+            Survey survey = new Survey();
+            survey.chatId = reader.readSignedVarLong();
+            survey.step = reader.readVarInt();
+            if (version >= 2) survey.answer = reader.readString();
+            return survey;
+        }
+    };
+
+    @Test
+    @DisplayName("Reads back the written values")
+    void testRoundTrip() {
+        long[] longs = {0, 1, -1, 127, 128, Long.MAX_VALUE, Long.MIN_VALUE, -1001234567890L};
+        int[] ints = {0, 1, 127, 128, 16384, Integer.MAX_VALUE, -1};
+
+        StateWriter writer = new StateWriter();
+        for (long value : longs) writer.writeSignedVarLong(value).writeVarLong(value);
+        for (int value : ints) writer.writeVarInt(value);
+        writer.writeString(null).writeString("").writeString("مرحبا 👋").writeBoolean(true).writeBytes(new byte[]{1, 2, 3});
+
+        StateReader reader = new StateReader(writer.toByteArray());
+        for (long value : longs) {
+            assertEquals(value, reader.readSignedVarLong(), "Signed long mismatched!");
+            assertEquals(value, reader.readVarLong(), "Unsigned long mismatched!");
+        }
+        for (int value : ints) assertEquals(value, reader.readVarInt(), "Integer mismatched!");
+        assertNull(reader.readString(), "Null string mismatched!");
+        assertEquals("", reader.readString(), "Empty string mismatched!");
+        assertEquals("مرحبا 👋", reader.readString(), "String mismatched!");
+        assertTrue(reader.readBoolean(), "Boolean mismatched!");
+        assertArrayEquals(new byte[]{1, 2, 3}, reader.readBytes(), "Bytes mismatched!");
+        assertFalse(reader.hasRemaining(), "Left unread bytes!");
+        assertThrows(IllegalArgumentException.class, reader::readByte, "Read past the end!");
+    }
+
+    @Test
+    @DisplayName("Stores a typed state in the interactivity state")
+    void testTypedState() {
+        InteractivityState state = new InteractivityState(null, null);
+        assertNull(state.getState(codec), "Decoded a missing state!");
+
+        Survey survey = new Survey();
+        survey.chatId = -1001234567890L;
+        survey.step = 3;
+        survey.answer = "yes";
+        state.setState(codec, survey);
+
+        assertEquals(1, state.data.size(), "The state isn't stored as a single value!");
+        Survey decoded = state.getState(codec);
+        assertEquals(survey.chatId, decoded.chatId, "Chat id mismatched!");
+        assertEquals(survey.step, decoded.step, "Step mismatched!");
+        assertEquals(survey.answer, decoded.answer, "Answer mismatched!");
+
+        InteractivityState reloaded = new InteractivityState(new HashMap<>(state.data), null);
+        reloaded.setState(codec, decoded);
+        assertFalse(reloaded.isModified(), "Setting an unchanged state modified it!");
+    }
+}
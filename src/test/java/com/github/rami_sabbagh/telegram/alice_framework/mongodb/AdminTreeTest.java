@@ -0,0 +1,62 @@
+package com.github.rami_sabbagh.telegram.alice_framework.mongodb;
+
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdminTreeTest {
+
+    private static final int OWNER = 1;
+
+    /**
+     * owner -> 10 -> 20 -> 30, owner -> 11, and 12 added by hand.
+     */
+    private static AdminTree createTree() {
+        AdminTree tree = new AdminTree();
+        tree.load(List.of(
+                new Document("_id", 10).append("promotedBy", OWNER),
+                new Document("_id", 11).append("promotedBy", OWNER),
+                new Document("_id", 12),
+                new Document("_id", 20).append("promotedBy", 10),
+                new Document("_id", 30).append("promotedBy", 20)));
+        return tree;
+    }
+
+    @Test
+    @DisplayName("Answers who promoted whom")
+    void testQueries() {
+        AdminTree tree = createTree();
+
+        assertEquals(5, tree.size(), "Size mismatched!");
+        assertTrue(tree.isAdmin(12), "Admin mismatched!");
+        assertFalse(tree.isAdmin(OWNER), "Admin mismatched!");
+        assertEquals(20, tree.promotedBy(30), "Promoter mismatched!");
+        assertNull(tree.promotedBy(12), "Promoter mismatched!");
+        assertEquals(List.of(10, 11), tree.subAdmins(OWNER), "Sub-admins mismatched!");
+        assertEquals(List.of(10, 11, 20, 30), tree.subtree(OWNER), "Subtree mismatched!");
+        assertEquals(List.of(20, 10, OWNER), tree.promotionChain(30), "Promotion chain mismatched!");
+    }
+
+    @Test
+    @DisplayName("Follows the promotions, demotions and reassignments")
+    void testUpdates() {
+        AdminTree tree = createTree();
+
+        tree.adminPromoted(40, 30);
+        assertEquals(List.of(20, 30, 40), tree.subtree(10), "Subtree mismatched!");
+
+        //The sub-admins of a demoted admin are transferred into the demoter.
+        tree.adminDemoted(20, OWNER);
+        assertFalse(tree.isAdmin(20), "Admin mismatched!");
+        assertEquals(OWNER, tree.promotedBy(30), "Promoter mismatched!");
+        assertTrue(tree.subAdmins(10).isEmpty(), "Sub-admins mismatched!");
+
+        tree.adminsReassigned(List.of(30, 40), 12);
+        assertEquals(List.of(30, 40), tree.subtree(12), "Subtree mismatched!");
+        assertEquals(List.of(10, 11), tree.subtree(OWNER), "Subtree mismatched!");
+    }
+}
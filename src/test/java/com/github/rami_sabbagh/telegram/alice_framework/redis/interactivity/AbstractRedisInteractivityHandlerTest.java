@@ -0,0 +1,90 @@
+package com.github.rami_sabbagh.telegram.alice_framework.redis.interactivity;
+
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivityListener;
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivitySession;
+import com.github.rami_sabbagh.telegram.alice_framework.interactivity.InteractivityState;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AbstractRedisInteractivityHandlerTest {
+
+    /**
+     * Keeps the hashes of the sessions in memory, encoded as they're written into redis.
+     */
+    private static class HashesHandler extends AbstractRedisInteractivityHandler {
+        final Map<String, Map<String, String>> hashes = new HashMap<>();
+
+        HashesHandler() {
+            super("test");
+        }
+
+        @Override
+        protected InteractivitySession loadSession(long chatId, int replyTo) {
+            return decodeActiveSession(hashes.getOrDefault(sessionKey(chatId, replyTo), Map.of()));
+        }
+
+        @Override
+        protected void storeSession(long chatId, int replyTo, InteractivitySession session) {
+            String[] arguments = encodeSession(session);
+            Map<String, String> hash = new HashMap<>();
+            for (int i = 2; i + 1 < arguments.length; i += 2) hash.put(arguments[i], arguments[i + 1]);
+            hashes.put(sessionKey(chatId, replyTo), hash);
+        }
+
+        @Override
+        protected void deleteSession(long chatId, int replyTo) {
+            hashes.remove(sessionKey(chatId, replyTo));
+        }
+    }
+
+    private static InteractivityListener listener(long timeout) {
+        return new InteractivityListener() {
+            @Override
+            public void activated(long chatId, InteractivityState state) {
+            }
+
+            @Override
+            public boolean process(long chatId, Message message, InteractivityState state) {
+                return true;
+            }
+
+            @Override
+            public void deactivated(long chatId, InteractivityState state) {
+            }
+
+            @Override
+            public long sessionTimeout() {
+                return timeout;
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("Doesn't load a session after its' timeout")
+    void testExpiredSession() {
+        HashesHandler handler = new HashesHandler();
+        handler.registerListener("survey", listener(60));
+        handler.registerListener("menu", listener(0));
+
+        handler.storeSession(-42, 0, new InteractivitySession("survey", null, Map.of("step", "1")));
+        handler.storeSession(-43, 0, new InteractivitySession("menu", null, Map.of()));
+        assertEquals(Map.of("step", "1"), handler.loadSession(-42, 0).data, "Data mismatched!");
+        assertFalse(handler.hashes.get(handler.sessionKey(-43, 0)).containsKey("expiresAt"),
+                "Stored an expiry time for a session without a timeout!");
+
+        //The timeout elapsed, while the hash is kept for the expiry grace period.
+        Map<String, String> hash = handler.hashes.get(handler.sessionKey(-42, 0));
+        hash.put("expiresAt", Long.toString(System.currentTimeMillis() - 1000));
+        assertNull(handler.loadSession(-42, 0), "Loaded an expired session!");
+        assertNotNull(handler.decodeSession(hash), "Can't decode the expired session for delivering its' expiry!");
+        assertNotNull(handler.loadSession(-43, 0), "Expired a session without a timeout!");
+
+        handler.close();
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.rami_sabbagh.telegram.alice_framework.utilities;
+
+import com.github.rami_sabbagh.telegram.alice_framework.utilities.ChatUtilities.ChatType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ChatTypeCacheTest {
+
+    @Test
+    @DisplayName("Caches the types of users, groups and supergroups")
+    void testPutGet() {
+        ChatTypeCache cache = new ChatTypeCache(16);
+
+        assertNull(cache.get(123456789L), "Found a type in an empty cache!");
+
+        cache.put(123456789L, ChatType.USER);
+        cache.put(-123456789L, ChatType.GROUP);
+        cache.put(-1001234567890L, ChatType.SUPERGROUP);
+
+        assertEquals(ChatType.USER, cache.get(123456789L), "User type mismatched!");
+        assertEquals(ChatType.GROUP, cache.get(-123456789L), "Group type mismatched!");
+        assertEquals(ChatType.SUPERGROUP, cache.get(-1001234567890L), "Supergroup type mismatched!");
+    }
+
+    @Test
+    @DisplayName("Never answers with the type of a colliding chat")
+    void testCollisions() {
+        ChatTypeCache cache = new ChatTypeCache(2);
+
+        for (long chatId = 1; chatId <= 100; chatId++) {
+            cache.put(chatId, ChatType.USER);
+            cache.put(-chatId, ChatType.GROUP);
+        }
+
+        for (long chatId = 1; chatId <= 100; chatId++) {
+            ChatType user = cache.get(chatId), group = cache.get(-chatId);
+            if (user != null) assertEquals(ChatType.USER, user, "Chat " + chatId + " got a wrong type!");
+            if (group != null) assertEquals(ChatType.GROUP, group, "Chat " + -chatId + " got a wrong type!");
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.rami_sabbagh.telegram.alice_framework.utilities;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLongSetTest {
+
+    @Test
+    @DisplayName("Adds and removes values")
+    void testAddRemove() {
+        ConcurrentLongSet set = new ConcurrentLongSet();
+
+        assertFalse(set.contains(0), "Found zero in an empty set!");
+        assertTrue(set.add(0), "Failed to add zero!");
+        assertTrue(set.add(-1001234567890L), "Failed to add a supergroup id!");
+        assertFalse(set.add(-1001234567890L), "Added the same value twice!");
+
+        assertTrue(set.contains(0), "Zero is missing!");
+        assertTrue(set.contains(-1001234567890L), "The supergroup id is missing!");
+        assertEquals(2, set.size(), "Size mismatched!");
+
+        assertTrue(set.remove(0), "Failed to remove zero!");
+        assertFalse(set.remove(0), "Removed zero twice!");
+        assertEquals(1, set.size(), "Size mismatched!");
+    }
+
+    @Test
+    @DisplayName("Behaves like a HashSet under random operations")
+    void testRandomOperations() {
+        ConcurrentLongSet set = new ConcurrentLongSet(4);
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextInt(2000) - 1000;
+            if (random.nextBoolean())
+                assertEquals(expected.add(value), set.add(value), "add(" + value + ") mismatched!");
+            else
+                assertEquals(expected.remove(value), set.remove(value), "remove(" + value + ") mismatched!");
+        }
+
+        assertEquals(expected.size(), set.size(), "Size mismatched!");
+        for (long value = -1000; value < 1000; value++)
+            assertEquals(expected.contains(value), set.contains(value), "contains(" + value + ") mismatched!");
+
+        Set<Long> iterated = new HashSet<>();
+        set.forEach(iterated::add);
+        assertEquals(expected, iterated, "Iterated values mismatched!");
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.rami_sabbagh.telegram.alice_framework.utilities;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    @Test
+    @DisplayName("Paces the messages by the global and the per-chat rates")
+    void testReserve() {
+        RateLimiter limiter = new RateLimiter(10, 1);
+        long second = TimeUnit.SECONDS.toNanos(1);
+
+        //10 chats fit within the first second.
+        long last = 0;
+        for (long chatId = 1; chatId <= 10; chatId++) last = limiter.reserve(chatId);
+        assertTrue(last < second, "Delayed distinct chats beyond the global rate!");
+        assertTrue(last > second / 2, "Exceeded the global rate!");
+
+        //The first chat has to wait a whole second since its' previous message.
+        assertTrue(limiter.reserve(1) >= second - second / 10, "Exceeded the per-chat rate!");
+    }
+
+    @Test
+    @DisplayName("Pauses the sending")
+    void testPause() {
+        RateLimiter limiter = new RateLimiter();
+        limiter.pause(5);
+        assertTrue(limiter.reserve(1) > TimeUnit.SECONDS.toNanos(4), "Sent during a pause!");
+    }
+}